@@ -0,0 +1,33 @@
+package com.sourcegraph.toolchain.bench;
+
+import com.sourcegraph.toolchain.core.GraphWriter;
+import com.sourcegraph.toolchain.core.objects.Def;
+import com.sourcegraph.toolchain.core.objects.Ref;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Graph writer that hands defs and refs to JMH black hole, thus listener's work is not optimized away
+ * while serialization is not measured
+ */
+public class BlackholeGraphWriter implements GraphWriter {
+
+    private final Blackhole blackhole;
+
+    public BlackholeGraphWriter(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void writeRef(Ref ref) {
+        blackhole.consume(ref);
+    }
+
+    @Override
+    public void writeDef(Def def) {
+        blackhole.consume(def);
+    }
+
+    @Override
+    public void flush() {
+    }
+}
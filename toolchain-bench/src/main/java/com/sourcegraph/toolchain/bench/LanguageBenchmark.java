@@ -0,0 +1,110 @@
+package com.sourcegraph.toolchain.bench;
+
+import com.sourcegraph.toolchain.core.GraphWriter;
+import com.sourcegraph.toolchain.language.ParseException;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures language support phases separately: lexer tokenization, full parse (lexing included), and parse tree
+ * listener walk over trees parsed in advance. Single operation processes all source files of the language.
+ * Language benchmarks extend this class providing grammar and listener specific parts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dlog4j.configuration=log4j-bench.xml"})
+public abstract class LanguageBenchmark {
+
+    /**
+     * Directory with sources to benchmark on, bundled samples are used if empty
+     */
+    @Param("")
+    public String sources;
+
+    private List<File> files;
+
+    private List<ParseTree> trees;
+
+    @Setup
+    public void setUp() throws IOException, ParseException {
+        File root = Samples.getRoot(sources, getName());
+        files = new ArrayList<>(collect(root));
+        if (files.isEmpty()) {
+            throw new IOException("No " + getName() + " sources found in " + root);
+        }
+        files.sort(null);
+        trees = new ArrayList<>(files.size());
+        for (File file : files) {
+            trees.add(parse(file));
+        }
+    }
+
+    @Benchmark
+    public void lex(Blackhole blackhole) throws IOException {
+        for (File file : files) {
+            Lexer lexer = createLexer(file);
+            for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+                blackhole.consume(token);
+            }
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws ParseException {
+        for (File file : files) {
+            blackhole.consume(parse(file));
+        }
+    }
+
+    @Benchmark
+    public void walk(Blackhole blackhole) {
+        walk(files, trees, new BlackholeGraphWriter(blackhole));
+    }
+
+    /**
+     * @return language name, also name of bundled samples directory
+     */
+    protected abstract String getName();
+
+    /**
+     * @param root root directory
+     * @return source files of the language found in root directory
+     * @throws IOException
+     */
+    protected abstract Collection<File> collect(File root) throws IOException;
+
+    /**
+     * @param file source file
+     * @return lexer bound to file content, configured the same way language support does
+     * @throws IOException
+     */
+    protected abstract Lexer createLexer(File file) throws IOException;
+
+    /**
+     * @param file source file
+     * @return parse tree built by language support
+     * @throws ParseException
+     */
+    protected abstract ParseTree parse(File file) throws ParseException;
+
+    /**
+     * Walks parse trees with a new language support instance, the same way graph command does
+     * @param files source files
+     * @param trees parse trees of source files
+     * @param writer writer to emit defs and refs to
+     */
+    protected abstract void walk(List<File> files, List<ParseTree> trees, GraphWriter writer);
+}
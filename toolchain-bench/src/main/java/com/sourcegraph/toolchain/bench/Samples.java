@@ -0,0 +1,75 @@
+package com.sourcegraph.toolchain.bench;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Source files benchmarks run on. Representative samples of each language are bundled as resources
+ * (listed in samples/index) and extracted to temporary directory once per JVM
+ */
+public class Samples {
+
+    private static final String ROOT = "samples/";
+
+    private static File extracted;
+
+    private Samples() {
+    }
+
+    /**
+     * @param sources directory with sources to benchmark on, bundled samples are used if empty
+     * @param language language name, for example "cpp"
+     * @return directory with language's sources
+     * @throws IOException
+     */
+    public static File getRoot(String sources, String language) throws IOException {
+        if (!StringUtils.isEmpty(sources)) {
+            File dir = new File(sources);
+            if (!dir.isDirectory()) {
+                throw new IOException(sources + " is not a directory");
+            }
+            return dir;
+        }
+        return new File(extract(), language);
+    }
+
+    /**
+     * Extracts bundled samples
+     */
+    private static synchronized File extract() throws IOException {
+        if (extracted != null) {
+            return extracted;
+        }
+        Path dir = Files.createTempDirectory("srclib-basic-bench");
+        FileUtils.forceDeleteOnExit(dir.toFile());
+        for (String name : IOUtils.readLines(open("index"), StandardCharsets.UTF_8)) {
+            if (StringUtils.isBlank(name)) {
+                continue;
+            }
+            Path target = dir.resolve(name);
+            Files.createDirectories(target.getParent());
+            try (InputStream is = open(name)) {
+                Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        extracted = dir.toFile();
+        return extracted;
+    }
+
+    private static InputStream open(String name) throws IOException {
+        InputStream is = Samples.class.getClassLoader().getResourceAsStream(ROOT + name);
+        if (is == null) {
+            throw new IOException("Missing bundled sample " + name);
+        }
+        return is;
+    }
+}
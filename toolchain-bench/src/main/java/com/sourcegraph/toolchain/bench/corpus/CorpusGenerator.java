@@ -0,0 +1,102 @@
+package com.sourcegraph.toolchain.bench.corpus;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates synthetic repositories of configurable size, one per language, to find scaling problems fixtures
+ * are too small to show (deep inheritance, wide include fan-out, large symbol tables). Repositories are written to
+ * subdirectories of output directory named after languages and are ready for scan and graph commands
+ */
+public class CorpusGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CorpusGenerator.class);
+
+    private static final Map<String, LanguageCorpus> CORPORA = new LinkedHashMap<>();
+
+    static {
+        for (LanguageCorpus corpus : new LanguageCorpus[]{
+                new CppCorpus(), new ObjCCorpus(), new SwiftCorpus(), new PhpCorpus()}) {
+            CORPORA.put(corpus.getName(), corpus);
+        }
+    }
+
+    @Parameter(names = {"--out"}, required = true, description = "Directory to write repositories to")
+    String out;
+
+    @Parameter(names = {"--languages"}, description = "Languages to generate repositories for")
+    List<String> languages = Arrays.asList("cpp", "objc", "swift", "php");
+
+    @Parameter(names = {"--classes"}, description = "Number of classes per repository")
+    int classes = 1000;
+
+    @Parameter(names = {"--packages"}, description = "Number of packages (directories, namespaces) to spread classes over")
+    int packages = 20;
+
+    @Parameter(names = {"--depth"}, description = "Length of inheritance chains")
+    int depth = 5;
+
+    @Parameter(names = {"--fan-out"}, description = "Number of other classes each class refers to (includes, imports)")
+    int fanOut = 5;
+
+    @Parameter(names = {"--members"}, description = "Number of methods and fields per class")
+    int members = 4;
+
+    @Parameter(names = {"--seed"}, description = "Random seed, the same options and seed produce the same repositories")
+    long seed = 1;
+
+    public static void main(String[] args) throws IOException {
+        CorpusGenerator generator = new CorpusGenerator();
+        JCommander jc = new JCommander(generator);
+        jc.setProgramName(CorpusGenerator.class.getName());
+        try {
+            jc.parse(args);
+        } catch (ParameterException e) {
+            StringBuilder usage = new StringBuilder();
+            jc.usage(usage);
+            LOGGER.error("{}\n{}", e.getMessage(), usage);
+            System.exit(1);
+        }
+        generator.generate();
+    }
+
+    /**
+     * Writes repositories
+     * @throws IOException
+     */
+    void generate() throws IOException {
+        CorpusModel model = new CorpusModel(classes, packages, depth, fanOut, members, seed);
+        for (String language : languages) {
+            LanguageCorpus corpus = CORPORA.get(language);
+            if (corpus == null) {
+                throw new IllegalArgumentException("Unsupported language " + language + ", expected one of " +
+                        CORPORA.keySet());
+            }
+            File root = new File(out, language);
+            String[] existing = root.list();
+            if (existing != null && existing.length > 0) {
+                throw new IOException(root + " is not empty");
+            }
+            long start = System.currentTimeMillis();
+            corpus.write(model, root);
+            LOGGER.info("Generated {} classes of {} in {} ({} files, {}) in {} ms",
+                    classes,
+                    language,
+                    root,
+                    FileUtils.listFiles(root, null, true).size(),
+                    FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(root)),
+                    System.currentTimeMillis() - start);
+        }
+    }
+}
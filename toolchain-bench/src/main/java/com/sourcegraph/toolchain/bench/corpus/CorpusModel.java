@@ -0,0 +1,103 @@
+package com.sourcegraph.toolchain.bench.corpus;
+
+import java.util.Random;
+
+/**
+ * Language-neutral shape of a synthetic repository: classes spread over packages, organized into inheritance
+ * chains, each one referring to (including, importing) a number of other classes. Language corpora render the same
+ * model, thus repositories of different languages have comparable structure
+ */
+class CorpusModel {
+
+    private static final String[] WORDS = {
+            "Account", "Buffer", "Channel", "Document", "Engine", "Filter", "Gateway", "Handler", "Index", "Journal",
+            "Kernel", "Ledger", "Monitor", "Node", "Order", "Parser", "Queue", "Record", "Session", "Token",
+            "Upload", "Vector", "Widget"
+    };
+
+    /**
+     * Number of classes
+     */
+    final int classes;
+
+    /**
+     * Number of methods and fields per class
+     */
+    final int members;
+
+    /**
+     * Parent of each class, -1 for roots of inheritance chains
+     */
+    private final int[] parents;
+
+    /**
+     * Classes each class refers to
+     */
+    private final int[][] dependencies;
+
+    private final int packages;
+
+    /**
+     * @param classes number of classes
+     * @param packages number of packages (directories, namespaces) to spread classes over
+     * @param depth length of inheritance chains
+     * @param fanOut number of other classes each class refers to
+     * @param members number of methods and fields per class
+     * @param seed random seed, the same parameters and seed produce the same model
+     */
+    CorpusModel(int classes, int packages, int depth, int fanOut, int members, long seed) {
+        this.classes = classes;
+        this.packages = Math.max(1, Math.min(packages, classes));
+        this.members = Math.max(1, members);
+        this.parents = new int[classes];
+        this.dependencies = new int[classes][];
+        Random random = new Random(seed);
+        for (int i = 0; i < classes; i++) {
+            parents[i] = depth > 1 && i % depth != 0 ? i - 1 : -1;
+            // referring to classes defined earlier only keeps include graph acyclic, like real layered code is
+            int n = Math.min(fanOut, i);
+            dependencies[i] = new int[n];
+            for (int j = 0; j < n; j++) {
+                dependencies[i][j] = random.nextInt(i);
+            }
+        }
+    }
+
+    /**
+     * @return class name
+     */
+    String name(int i) {
+        return WORDS[i % WORDS.length] + i;
+    }
+
+    /**
+     * @return package (directory or namespace) name of a class
+     */
+    String pkg(int i) {
+        return "pkg" + (i % packages);
+    }
+
+    /**
+     * @return parent class or -1
+     */
+    int parent(int i) {
+        return parents[i];
+    }
+
+    /**
+     * @return root of class's inheritance chain
+     */
+    int root(int i) {
+        while (parents[i] >= 0) {
+            i = parents[i];
+        }
+        return i;
+    }
+
+    /**
+     * @return classes referred to by a class, may contain duplicates
+     */
+    int[] dependencies(int i) {
+        return dependencies[i];
+    }
+}
@@ -0,0 +1,121 @@
+package com.sourcegraph.toolchain.bench.corpus;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * C++ repository: header and source file per class, headers include headers of parent and referred classes
+ */
+class CppCorpus extends LanguageCorpus {
+
+    @Override
+    String getName() {
+        return "cpp";
+    }
+
+    @Override
+    void write(CorpusModel model, File root) throws IOException {
+        for (int i = 0; i < model.classes; i++) {
+            write(root, path(model, i, ".h"), header(model, i));
+            write(root, path(model, i, ".cpp"), source(model, i));
+        }
+    }
+
+    private static String path(CorpusModel model, int i, String extension) {
+        return model.pkg(i) + '/' + model.name(i) + extension;
+    }
+
+    private static String qualifiedName(CorpusModel model, int i) {
+        return model.pkg(i) + "::" + model.name(i);
+    }
+
+    private static CharSequence header(CorpusModel model, int i) {
+        String name = model.name(i);
+        int parent = model.parent(i);
+        int[] dependencies = distinctDependencies(model, i);
+        String guard = (model.pkg(i) + '_' + name + "_H").toUpperCase();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("#ifndef ").append(guard).append('\n');
+        sb.append("#define ").append(guard).append("\n\n");
+        if (parent >= 0) {
+            sb.append("#include \"").append(path(model, parent, ".h")).append("\"\n");
+        }
+        for (int dependency : dependencies) {
+            if (dependency != parent) {
+                sb.append("#include \"").append(path(model, dependency, ".h")).append("\"\n");
+            }
+        }
+        sb.append("\nnamespace ").append(model.pkg(i)).append(" {\n\n");
+        sb.append("    class ").append(name);
+        if (parent >= 0) {
+            sb.append(" : public ").append(qualifiedName(model, parent));
+        }
+        sb.append(" {\n");
+        sb.append("    public:\n");
+        sb.append("        ").append(name).append("();\n\n");
+        sb.append("        virtual ~").append(name).append("();\n");
+        for (int m = 0; m < model.members; m++) {
+            sb.append("\n        virtual int method").append(m).append("(int value);\n");
+        }
+        sb.append("\n    protected:\n");
+        for (int m = 0; m < model.members; m++) {
+            sb.append("        int field").append(m).append(";\n");
+        }
+        for (int j = 0; j < dependencies.length; j++) {
+            sb.append("        ").append(qualifiedName(model, dependencies[j])).append(" *dep").append(j).append(";\n");
+        }
+        sb.append("    };\n\n");
+        sb.append("}\n\n");
+        sb.append("#endif\n");
+        return sb;
+    }
+
+    private static CharSequence source(CorpusModel model, int i) {
+        String name = model.name(i);
+        int parent = model.parent(i);
+        int[] dependencies = distinctDependencies(model, i);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("#include \"").append(path(model, i, ".h")).append("\"\n\n");
+        sb.append("namespace ").append(model.pkg(i)).append(" {\n\n");
+        sb.append("    ").append(name).append("::").append(name).append("() :");
+        if (parent >= 0) {
+            sb.append(' ').append(qualifiedName(model, parent)).append("(),");
+        }
+        for (int m = 0; m < model.members; m++) {
+            sb.append(" field").append(m).append('(').append(m).append(')');
+            if (m < model.members - 1 || dependencies.length > 0) {
+                sb.append(',');
+            }
+        }
+        for (int j = 0; j < dependencies.length; j++) {
+            sb.append(" dep").append(j).append("(0)");
+            if (j < dependencies.length - 1) {
+                sb.append(',');
+            }
+        }
+        sb.append(" {\n");
+        sb.append("    }\n\n");
+        sb.append("    ").append(name).append("::~").append(name).append("() {\n");
+        sb.append("    }\n");
+        for (int m = 0; m < model.members; m++) {
+            sb.append("\n    int ").append(name).append("::method").append(m).append("(int value) {\n");
+            sb.append("        int result = field").append(m).append(" + value;\n");
+            if (parent >= 0) {
+                sb.append("        result += ").append(qualifiedName(model, parent)).append("::method").append(m).
+                        append("(value);\n");
+            }
+            for (int j = m; j < dependencies.length; j += model.members) {
+                sb.append("        if (dep").append(j).append(" != 0) {\n");
+                sb.append("            result += dep").append(j).append("->method").append(j % model.members).
+                        append("(result);\n");
+                sb.append("        }\n");
+            }
+            sb.append("        return result;\n");
+            sb.append("    }\n");
+        }
+        sb.append("\n}\n");
+        return sb;
+    }
+}
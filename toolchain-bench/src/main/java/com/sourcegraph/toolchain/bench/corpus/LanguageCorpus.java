@@ -0,0 +1,49 @@
+package com.sourcegraph.toolchain.bench.corpus;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Renders corpus model as a source repository of particular language
+ */
+abstract class LanguageCorpus {
+
+    /**
+     * @return language name, also name of repository directory
+     */
+    abstract String getName();
+
+    /**
+     * Writes repository files
+     * @param model model to render
+     * @param root repository root directory
+     * @throws IOException
+     */
+    abstract void write(CorpusModel model, File root) throws IOException;
+
+    /**
+     * Writes file creating parent directories if needed
+     */
+    static void write(File root, String path, CharSequence content) throws IOException {
+        File file = new File(root, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return distinct classes referred to by a given class, in order of appearance
+     */
+    static int[] distinctDependencies(CorpusModel model, int i) {
+        return Arrays.stream(model.dependencies(i)).distinct().toArray();
+    }
+
+    /**
+     * @return name with lowercase first letter, for example to name class's members
+     */
+    static String lowerFirst(String name) {
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+}
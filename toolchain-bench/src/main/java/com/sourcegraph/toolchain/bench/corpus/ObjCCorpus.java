@@ -0,0 +1,100 @@
+package com.sourcegraph.toolchain.bench.corpus;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Objective-C repository: interface and implementation file per class. Interfaces import parent's interface and
+ * forward-declare referred classes, implementations import interfaces of referred classes
+ */
+class ObjCCorpus extends LanguageCorpus {
+
+    @Override
+    String getName() {
+        return "objc";
+    }
+
+    @Override
+    void write(CorpusModel model, File root) throws IOException {
+        for (int i = 0; i < model.classes; i++) {
+            write(root, path(model, i, ".h"), header(model, i));
+            write(root, path(model, i, ".m"), source(model, i));
+        }
+    }
+
+    private static String path(CorpusModel model, int i, String extension) {
+        return model.pkg(i) + '/' + model.name(i) + extension;
+    }
+
+    private static CharSequence header(CorpusModel model, int i) {
+        String name = model.name(i);
+        String field = lowerFirst(name) + "Field";
+        int parent = model.parent(i);
+        int[] dependencies = distinctDependencies(model, i);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("#import <Foundation/Foundation.h>\n");
+        if (parent >= 0) {
+            // imports are resolved relative to importing file
+            sb.append("#import \"../").append(path(model, parent, ".h")).append("\"\n");
+        }
+        sb.append('\n');
+        for (int dependency : dependencies) {
+            sb.append("@class ").append(model.name(dependency)).append(";\n");
+        }
+        sb.append("\n@interface ").append(name).append(" : ").append(parent >= 0 ? model.name(parent) : "NSObject").
+                append("\n\n");
+        for (int m = 0; m < model.members; m++) {
+            sb.append("@property (nonatomic, assign) NSInteger ").append(field).append(m).append(";\n");
+        }
+        for (int j = 0; j < dependencies.length; j++) {
+            sb.append("@property (nonatomic, strong) ").append(model.name(dependencies[j])).append(" *dep").
+                    append(j).append(";\n");
+        }
+        for (int m = 0; m < model.members; m++) {
+            sb.append("\n- (NSInteger)method").append(m).append(":(NSInteger)value;\n");
+        }
+        sb.append("\n@end\n");
+        return sb;
+    }
+
+    private static CharSequence source(CorpusModel model, int i) {
+        String name = model.name(i);
+        String field = lowerFirst(name) + "Field";
+        int parent = model.parent(i);
+        int[] dependencies = distinctDependencies(model, i);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("#import \"").append(name).append(".h\"\n");
+        for (int dependency : dependencies) {
+            sb.append("#import \"../").append(path(model, dependency, ".h")).append("\"\n");
+        }
+        sb.append("\n@implementation ").append(name).append("\n\n");
+        sb.append("- (instancetype)init {\n");
+        sb.append("    self = [super init];\n");
+        sb.append("    if (self) {\n");
+        for (int m = 0; m < model.members; m++) {
+            sb.append("        _").append(field).append(m).append(" = ").append(m).append(";\n");
+        }
+        sb.append("    }\n");
+        sb.append("    return self;\n");
+        sb.append("}\n");
+        for (int m = 0; m < model.members; m++) {
+            sb.append("\n- (NSInteger)method").append(m).append(":(NSInteger)value {\n");
+            sb.append("    NSInteger result = self.").append(field).append(m).append(" + value;\n");
+            if (parent >= 0) {
+                sb.append("    result += [super method").append(m).append(":value];\n");
+            }
+            for (int j = m; j < dependencies.length; j += model.members) {
+                sb.append("    if (self.dep").append(j).append(" != nil) {\n");
+                sb.append("        result += [self.dep").append(j).append(" method").append(j % model.members).
+                        append(":result];\n");
+                sb.append("    }\n");
+            }
+            sb.append("    return result;\n");
+            sb.append("}\n");
+        }
+        sb.append("\n@end\n");
+        return sb;
+    }
+}
@@ -0,0 +1,103 @@
+package com.sourcegraph.toolchain.bench.corpus;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * PHP repository: class per file laid out according to PSR-4, composer.json maps "Gen\" namespace to "src/"
+ * thus referred classes are resolved (and processed) through autoloader
+ */
+class PhpCorpus extends LanguageCorpus {
+
+    private static final String NAMESPACE = "Gen";
+
+    @Override
+    String getName() {
+        return "php";
+    }
+
+    @Override
+    void write(CorpusModel model, File root) throws IOException {
+        write(root, "composer.json", "{\n" +
+                "    \"name\": \"srclib-basic/generated\",\n" +
+                "    \"autoload\": {\n" +
+                "        \"psr-4\": {\n" +
+                "            \"" + NAMESPACE + "\\\\\": [\"src/\"]\n" +
+                "        }\n" +
+                "    }\n" +
+                "}\n");
+        for (int i = 0; i < model.classes; i++) {
+            write(root, "src/" + namespace(model, i) + '/' + model.name(i) + ".php", source(model, i));
+        }
+    }
+
+    private static String namespace(CorpusModel model, int i) {
+        return StringUtils.capitalize(model.pkg(i));
+    }
+
+    private static String qualifiedName(CorpusModel model, int i) {
+        return NAMESPACE + '\\' + namespace(model, i) + '\\' + model.name(i);
+    }
+
+    private static CharSequence source(CorpusModel model, int i) {
+        String name = model.name(i);
+        int parent = model.parent(i);
+        int[] dependencies = distinctDependencies(model, i);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?php\n\n");
+        sb.append("namespace ").append(NAMESPACE).append('\\').append(namespace(model, i)).append(";\n\n");
+        if (parent >= 0) {
+            sb.append("use ").append(qualifiedName(model, parent)).append(";\n");
+        }
+        for (int dependency : dependencies) {
+            if (dependency != parent) {
+                sb.append("use ").append(qualifiedName(model, dependency)).append(";\n");
+            }
+        }
+        sb.append("\nclass ").append(name);
+        if (parent >= 0) {
+            sb.append(" extends ").append(model.name(parent));
+        }
+        sb.append("\n{\n");
+        for (int m = 0; m < model.members; m++) {
+            sb.append("    protected $field").append(m).append(";\n");
+        }
+        for (int j = 0; j < dependencies.length; j++) {
+            sb.append("    private $dep").append(j).append(";\n");
+        }
+        sb.append("\n    public function __construct()\n");
+        sb.append("    {\n");
+        if (parent >= 0) {
+            sb.append("        parent::__construct();\n");
+        }
+        for (int m = 0; m < model.members; m++) {
+            sb.append("        $this->field").append(m).append(" = ").append(m).append(";\n");
+        }
+        for (int j = 0; j < dependencies.length; j++) {
+            sb.append("        $this->dep").append(j).append(" = new ").append(model.name(dependencies[j])).
+                    append("();\n");
+        }
+        sb.append("    }\n");
+        for (int m = 0; m < model.members; m++) {
+            sb.append("\n    public function method").append(m).append("($value)\n");
+            sb.append("    {\n");
+            sb.append("        $result = $this->field").append(m).append(" + $value;\n");
+            if (parent >= 0) {
+                sb.append("        $result += parent::method").append(m).append("($value);\n");
+            }
+            for (int j = m; j < dependencies.length; j += model.members) {
+                sb.append("        if ($this->dep").append(j).append(" !== null) {\n");
+                sb.append("            $result += $this->dep").append(j).append("->method").
+                        append(j % model.members).append("($result);\n");
+                sb.append("        }\n");
+            }
+            sb.append("        return $result;\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+        return sb;
+    }
+}
@@ -0,0 +1,66 @@
+package com.sourcegraph.toolchain.bench.corpus;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Swift repository: class per file, all classes belong to the same module
+ */
+class SwiftCorpus extends LanguageCorpus {
+
+    @Override
+    String getName() {
+        return "swift";
+    }
+
+    @Override
+    void write(CorpusModel model, File root) throws IOException {
+        for (int i = 0; i < model.classes; i++) {
+            write(root, "Sources/" + model.pkg(i) + '/' + model.name(i) + ".swift", source(model, i));
+        }
+    }
+
+    private static CharSequence source(CorpusModel model, int i) {
+        String name = model.name(i);
+        // stored properties can't be overridden, thus each class has its own ones
+        String field = lowerFirst(name) + "Field";
+        int parent = model.parent(i);
+        int[] dependencies = distinctDependencies(model, i);
+        String override = parent >= 0 ? "override " : "";
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("import Foundation\n\n");
+        sb.append("class ").append(name);
+        if (parent >= 0) {
+            sb.append(": ").append(model.name(parent));
+        }
+        sb.append(" {\n");
+        for (int m = 0; m < model.members; m++) {
+            sb.append("    var ").append(field).append(m).append(" = ").append(m).append('\n');
+        }
+        for (int j = 0; j < dependencies.length; j++) {
+            sb.append("    var dep").append(j).append(": ").append(model.name(dependencies[j])).append("?\n");
+        }
+        sb.append("\n    ").append(override).append("init() {\n");
+        if (parent >= 0) {
+            sb.append("        super.init()\n");
+        }
+        sb.append("    }\n");
+        for (int m = 0; m < model.members; m++) {
+            sb.append("\n    ").append(override).append("func method").append(m).append("(value: Int) -> Int {\n");
+            sb.append("        var result = ").append(field).append(m).append(" + value\n");
+            if (parent >= 0) {
+                sb.append("        result += super.method").append(m).append("(value: value)\n");
+            }
+            for (int j = m; j < dependencies.length; j += model.members) {
+                sb.append("        if let dep = dep").append(j).append(" {\n");
+                sb.append("            result += dep.method").append(j % model.members).append("(value: result)\n");
+                sb.append("        }\n");
+            }
+            sb.append("        return result\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+        return sb;
+    }
+}
@@ -0,0 +1,69 @@
+package com.sourcegraph.toolchain.bench.throughput;
+
+import com.google.gson.Gson;
+import com.sourcegraph.toolchain.application.Main;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs srclib-basic command and writes its resource usage to a file when JVM exits
+ * (the command may terminate JVM with System.exit).
+ * Usage: Probe STATS-FILE COMMAND [ARGS...]
+ */
+public class Probe {
+
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+    public static void main(String[] args) throws IOException {
+        Path statsFile = Paths.get(args[0]);
+        long start = System.nanoTime();
+        ProcessStats stats = new ProcessStats();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stats.Millis = (System.nanoTime() - start) / 1000000;
+            collect(stats);
+            try {
+                Files.write(statsFile, new Gson().toJson(stats).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("Unable to write " + statsFile + ": " + e);
+            }
+        }));
+        Main.main(Arrays.copyOfRange(args, 1, args.length));
+    }
+
+    private static void collect(ProcessStats stats) {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            stats.GcMillis += Math.max(gc.getCollectionTime(), 0);
+            stats.GcCount += Math.max(gc.getCollectionCount(), 0);
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                stats.PeakHeapBytes += pool.getPeakUsage().getUsed();
+            }
+        }
+        if (!Files.isReadable(PROC_STATUS)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(PROC_STATUS, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                // VmHWM:     123456 kB
+                if (line.startsWith("VmHWM:")) {
+                    String[] parts = line.substring(6).trim().split("\\s+");
+                    stats.PeakRssBytes = Long.parseLong(parts[0]) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // unknown
+        }
+    }
+}
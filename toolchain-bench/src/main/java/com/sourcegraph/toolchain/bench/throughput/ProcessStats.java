@@ -0,0 +1,37 @@
+package com.sourcegraph.toolchain.bench.throughput;
+
+/**
+ * Resource usage of a single srclib-basic command run in its own JVM
+ */
+class ProcessStats {
+
+    /**
+     * Command's exit code, set by harness
+     */
+    int ExitCode;
+
+    /**
+     * Wall time of command, JVM startup excluded
+     */
+    long Millis;
+
+    /**
+     * Peak resident set size of JVM process, -1 if unknown (not Linux)
+     */
+    long PeakRssBytes = -1;
+
+    /**
+     * Sum of peak usages of heap memory pools
+     */
+    long PeakHeapBytes;
+
+    /**
+     * Time spent in garbage collection
+     */
+    long GcMillis;
+
+    /**
+     * Number of garbage collections
+     */
+    long GcCount;
+}
@@ -0,0 +1,277 @@
+package com.sourcegraph.toolchain.bench.throughput;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.sourcegraph.toolchain.core.JSONUtil;
+import com.sourcegraph.toolchain.core.objects.SourceUnit;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Runs scan and graph commands end to end on given repositories, each command in its own JVM, and records
+ * throughput (files per second), peak RSS, and GC time of every source unit into a JSON report.
+ * When baseline report is given, logs how results changed compared to it
+ */
+public class ThroughputHarness {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThroughputHarness.class);
+
+    @Parameter(description = "Repository directories", required = true)
+    List<String> repos = new ArrayList<>();
+
+    @Parameter(names = {"--out"}, description = "File to write report to, STDOUT if not set")
+    String out;
+
+    @Parameter(names = {"--baseline"}, description = "Report to compare results with")
+    String baseline;
+
+    @Parameter(names = {"--runs"}, description = "Number of runs, median run (by graph time) of each unit is reported")
+    int runs = 3;
+
+    @Parameter(names = {"--jvm-args"}, description = "JVM options to run commands with")
+    String jvmArgs = "-Xmx4g";
+
+    @Parameter(names = {"--graph-args"}, description = "Extra arguments of graph command, for example \"--threads 4\"")
+    String graphArgs = "";
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        ThroughputHarness harness = new ThroughputHarness();
+        JCommander jc = new JCommander(harness);
+        jc.setProgramName(ThroughputHarness.class.getName());
+        try {
+            jc.parse(args);
+        } catch (ParameterException e) {
+            StringBuilder usage = new StringBuilder();
+            jc.usage(usage);
+            LOGGER.error("{}\n{}", e.getMessage(), usage);
+            System.exit(1);
+        }
+        if (!harness.run(System.out)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs commands and writes report to --out file or, if it is not set, to a given stream
+     * @param stdout stream to write report to when --out is not set, closed when done
+     * @return false if any command failed
+     */
+    boolean run(OutputStream stdout) throws IOException, InterruptedException {
+        ThroughputReport report = new ThroughputReport();
+        report.JvmArgs = split(jvmArgs);
+        report.Runs = Math.max(runs, 1);
+        File work = Files.createTempDirectory("srclib-basic-throughput").toFile();
+        boolean ok = true;
+        try {
+            for (String repo : repos) {
+                File dir = new File(repo).getCanonicalFile();
+                Map<String, List<ThroughputReport.UnitResult>> results = new LinkedHashMap<>();
+                for (int run = 1; run <= report.Runs; run++) {
+                    LOGGER.info("Run {} of {} on {}", run, report.Runs, dir);
+                    List<ThroughputReport.UnitResult> unitResults = runRepo(dir, work);
+                    if (unitResults == null) {
+                        ok = false;
+                        break;
+                    }
+                    for (ThroughputReport.UnitResult result : unitResults) {
+                        results.computeIfAbsent(result.key(), k -> new ArrayList<>()).add(result);
+                    }
+                }
+                for (List<ThroughputReport.UnitResult> unitResults : results.values()) {
+                    unitResults.sort(Comparator.comparingLong(result -> result.Graph.Millis));
+                    report.Units.add(unitResults.get(unitResults.size() / 2));
+                }
+            }
+        } finally {
+            if (ok) {
+                FileUtils.deleteQuietly(work);
+            } else {
+                LOGGER.error("Some commands failed, see logs in {}", work);
+            }
+        }
+
+        JSONUtil.writeJSON(report, out == null ? stdout : Files.newOutputStream(new File(out).toPath()));
+        for (ThroughputReport.UnitResult result : report.Units) {
+            LOGGER.info("{} {}: {} files, {} in {} ms, {} files/s, peak RSS {}, GC {} ms",
+                    result.Repo,
+                    result.Type,
+                    result.Files,
+                    FileUtils.byteCountToDisplaySize(result.Bytes),
+                    result.Graph.Millis,
+                    String.format("%.1f", result.FilesPerSecond),
+                    FileUtils.byteCountToDisplaySize(result.Graph.PeakRssBytes),
+                    result.Graph.GcMillis);
+        }
+        if (baseline != null) {
+            compare(report, gson.fromJson(new String(Files.readAllBytes(new File(baseline).toPath()),
+                    StandardCharsets.UTF_8), ThroughputReport.class));
+        }
+        return ok;
+    }
+
+    /**
+     * Scans repository and graphs each source unit found
+     * @return results of source units or null if command failed
+     */
+    private List<ThroughputReport.UnitResult> runRepo(File dir, File work) throws IOException, InterruptedException {
+        File units = new File(work, dir.getName() + ".units.json");
+        ProcessStats scan = execute(dir, work, "scan", null, units, Collections.singletonList("scan"));
+        if (scan.ExitCode != 0) {
+            return null;
+        }
+        Collection<SourceUnit> sourceUnits;
+        try (Reader reader = new InputStreamReader(new FileInputStream(units), StandardCharsets.UTF_8)) {
+            sourceUnits = gson.fromJson(reader, new TypeToken<List<SourceUnit>>() {
+            }.getType());
+        }
+        List<ThroughputReport.UnitResult> results = new ArrayList<>();
+        for (SourceUnit unit : sourceUnits) {
+            File input = new File(work, dir.getName() + '.' + unit.Type + ".unit.json");
+            Files.write(input.toPath(), gson.toJson(unit).getBytes(StandardCharsets.UTF_8));
+            File output = new File(work, dir.getName() + '.' + unit.Type + ".graph.json");
+            List<String> args = new ArrayList<>();
+            args.add("graph");
+            args.addAll(split(graphArgs));
+            ProcessStats graph = execute(dir, work, unit.Type, input, output, args);
+            FileUtils.deleteQuietly(output);
+            if (graph.ExitCode != 0) {
+                return null;
+            }
+
+            ThroughputReport.UnitResult result = new ThroughputReport.UnitResult();
+            result.Repo = dir.getName();
+            result.Unit = unit.Name;
+            result.Type = unit.Type;
+            result.Files = unit.Files.size();
+            for (String file : unit.Files) {
+                result.Bytes += new File(dir, file).length();
+            }
+            result.Scan = scan;
+            result.Graph = graph;
+            double seconds = Math.max(graph.Millis, 1) / 1000.0;
+            result.FilesPerSecond = result.Files / seconds;
+            result.BytesPerSecond = result.Bytes / seconds;
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Runs srclib-basic command in a new JVM
+     * @param dir working directory
+     * @param work directory to keep stats and logs in
+     * @param name name of log and stats files
+     * @param input file to read command's STDIN from, may be null
+     * @param output file to write command's STDOUT to
+     * @param args command line arguments
+     * @return resource usage of command
+     */
+    private ProcessStats execute(File dir,
+                                 File work,
+                                 String name,
+                                 File input,
+                                 File output,
+                                 List<String> args) throws IOException, InterruptedException {
+        File statsFile = new File(work, dir.getName() + '.' + name + ".stats.json");
+        File log = new File(work, dir.getName() + '.' + name + ".log");
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.addAll(split(jvmArgs));
+        command.add("-classpath");
+        command.add(getClassPath());
+        command.add(Probe.class.getName());
+        command.add(statsFile.getPath());
+        command.addAll(args);
+
+        ProcessBuilder builder = new ProcessBuilder(command).
+                directory(dir).
+                redirectOutput(output).
+                redirectError(log);
+        if (input != null) {
+            builder.redirectInput(input);
+        }
+        Files.deleteIfExists(statsFile.toPath());
+        int exitCode = builder.start().waitFor();
+        ProcessStats stats = statsFile.isFile() ?
+                gson.fromJson(new String(Files.readAllBytes(statsFile.toPath()), StandardCharsets.UTF_8),
+                        ProcessStats.class) :
+                new ProcessStats();
+        stats.ExitCode = exitCode;
+        if (exitCode != 0) {
+            LOGGER.error("{} failed in {} with exit code {}, see {}", args, dir, exitCode, log);
+        }
+        return stats;
+    }
+
+    /**
+     * @return class path of current JVM with absolute entries, commands run in other directories
+     */
+    private static String getClassPath() {
+        StringJoiner classPath = new StringJoiner(File.pathSeparator);
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            classPath.add(new File(entry).getAbsolutePath());
+        }
+        return classPath.toString();
+    }
+
+    /**
+     * Logs changes of throughput, peak RSS, and GC time compared to baseline
+     */
+    private static void compare(ThroughputReport report, ThroughputReport baseline) {
+        Map<String, ThroughputReport.UnitResult> previous = new HashMap<>();
+        for (ThroughputReport.UnitResult result : baseline.Units) {
+            previous.put(result.key(), result);
+        }
+        for (ThroughputReport.UnitResult result : report.Units) {
+            ThroughputReport.UnitResult before = previous.get(result.key());
+            if (before == null) {
+                LOGGER.info("{} {}: not in baseline", result.Repo, result.Type);
+                continue;
+            }
+            LOGGER.info("{} {}: files/s {} -> {} ({}), peak RSS {} -> {} ({}), GC {} -> {} ms ({})",
+                    result.Repo,
+                    result.Type,
+                    String.format("%.1f", before.FilesPerSecond),
+                    String.format("%.1f", result.FilesPerSecond),
+                    change(before.FilesPerSecond, result.FilesPerSecond),
+                    FileUtils.byteCountToDisplaySize(before.Graph.PeakRssBytes),
+                    FileUtils.byteCountToDisplaySize(result.Graph.PeakRssBytes),
+                    change(before.Graph.PeakRssBytes, result.Graph.PeakRssBytes),
+                    before.Graph.GcMillis,
+                    result.Graph.GcMillis,
+                    change(before.Graph.GcMillis, result.Graph.GcMillis));
+        }
+    }
+
+    /**
+     * @return relative change in percents, for example "+12.5%"
+     */
+    private static String change(double before, double after) {
+        if (before <= 0) {
+            return "n/a";
+        }
+        return String.format("%+.1f%%", (after - before) * 100 / before);
+    }
+
+    private static List<String> split(String args) {
+        List<String> ret = new ArrayList<>();
+        for (String arg : args.trim().split("\\s+")) {
+            if (!arg.isEmpty()) {
+                ret.add(arg);
+            }
+        }
+        return ret;
+    }
+}
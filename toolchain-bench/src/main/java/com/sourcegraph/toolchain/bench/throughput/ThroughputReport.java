@@ -0,0 +1,61 @@
+package com.sourcegraph.toolchain.bench.throughput;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throughput report written by harness. Reports made on the same corpus can be compared with each other
+ */
+class ThroughputReport {
+
+    String Java = System.getProperty("java.version");
+
+    /**
+     * JVM options commands were run with
+     */
+    List<String> JvmArgs;
+
+    /**
+     * Number of runs results were selected from (median by graph time)
+     */
+    int Runs;
+
+    List<UnitResult> Units = new ArrayList<>();
+
+    /**
+     * Results of a single source unit
+     */
+    static class UnitResult {
+
+        /**
+         * Name of repository directory
+         */
+        String Repo;
+
+        String Unit;
+
+        String Type;
+
+        int Files;
+
+        long Bytes;
+
+        /**
+         * Scan of repository the unit was found in
+         */
+        ProcessStats Scan;
+
+        ProcessStats Graph;
+
+        double FilesPerSecond;
+
+        double BytesPerSecond;
+
+        /**
+         * @return key to match the same units of different reports
+         */
+        String key() {
+            return Repo + ':' + Type + ':' + Unit;
+        }
+    }
+}
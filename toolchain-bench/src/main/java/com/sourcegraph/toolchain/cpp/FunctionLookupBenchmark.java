@@ -0,0 +1,104 @@
+package com.sourcegraph.toolchain.cpp;
+
+import com.sourcegraph.toolchain.language.ObjectInfo;
+import com.sourcegraph.toolchain.language.TypeInfo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares function lookup made by C++ parse tree listener for every function call (see
+ * {@link CPPTypeInfo#lookupFunction(String)}) with the scan over all functions of type it replaced.
+ * Type has a given number of functions, every fourth function is overloaded. Single operation looks up
+ * one call with matching signature and one call that matches overloads only
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dlog4j.configuration=log4j-bench.xml"})
+public class FunctionLookupBenchmark {
+
+    /**
+     * Number of functions type has
+     */
+    @Param({"10", "1000", "10000"})
+    public int functions;
+
+    private TypeInfo<Object, ObjectInfo> plain;
+
+    private CPPTypeInfo indexed;
+
+    private String[] exact;
+
+    private String[] overloaded;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        plain = new TypeInfo<>();
+        indexed = new CPPTypeInfo();
+        for (int i = 0; i < functions; i++) {
+            ObjectInfo info = new ObjectInfo("int");
+            add("fn" + i + "(_)", info);
+            if (i % 4 == 0) {
+                add("fn" + i + "(_,_)", info);
+            }
+        }
+        exact = new String[functions];
+        overloaded = new String[functions];
+        for (int i = 0; i < functions; i++) {
+            exact[i] = "fn" + i + "(_)";
+            overloaded[i] = "fn" + i + "()";
+        }
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        int i = next();
+        blackhole.consume(scan(plain, exact[i]));
+        blackhole.consume(scan(plain, overloaded[i]));
+    }
+
+    @Benchmark
+    public void indexed(Blackhole blackhole) {
+        int i = next();
+        blackhole.consume(indexed.lookupFunction(exact[i]));
+        blackhole.consume(indexed.lookupFunction(overloaded[i]));
+    }
+
+    private void add(String signature, ObjectInfo info) {
+        plain.setProperty(DefKind.FUNCTION, signature, info);
+        indexed.setProperty(DefKind.FUNCTION, signature, info);
+    }
+
+    private int next() {
+        int ret = next;
+        next = ret + 1 == functions ? 0 : ret + 1;
+        return ret;
+    }
+
+    /**
+     * Function lookup as it was made before functions were indexed
+     */
+    private static FunctionLookupResult scan(TypeInfo<?, ObjectInfo> info, String signature) {
+        int pos = signature.indexOf('(');
+        String prefix = signature.substring(0, pos);
+        FunctionLookupResult ret = new FunctionLookupResult();
+        for (String candidate : info.getProperties(DefKind.FUNCTION)) {
+            if (candidate.equals(signature)) {
+                ObjectInfo obj = info.getProperty(DefKind.FUNCTION, candidate);
+                ret.exact = new Function(candidate, obj.getType(), obj.getPrefix());
+                return ret;
+            }
+            if (candidate.startsWith(prefix)) {
+                ObjectInfo obj = info.getProperty(DefKind.FUNCTION, candidate);
+                ret.candidates.add(new Function(candidate, obj.getType(), obj.getPrefix()));
+            }
+        }
+        return ret;
+    }
+}
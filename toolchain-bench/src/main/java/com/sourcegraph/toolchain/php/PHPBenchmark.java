@@ -0,0 +1,86 @@
+package com.sourcegraph.toolchain.php;
+
+import com.sourcegraph.toolchain.bench.LanguageBenchmark;
+import com.sourcegraph.toolchain.core.GraphWriter;
+import com.sourcegraph.toolchain.core.PathUtil;
+import com.sourcegraph.toolchain.php.antlr4.PHPLexer;
+import com.sourcegraph.toolchain.language.ParseException;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PHP lexer, parser, and parse tree listener benchmarks
+ */
+public class PHPBenchmark extends LanguageBenchmark {
+
+    private final Support support = new Support(null);
+
+    @Override
+    protected String getName() {
+        return "php";
+    }
+
+    @Override
+    protected Collection<File> collect(File root) throws IOException {
+        return support.getFileCollector(root, null).collect(root);
+    }
+
+    @Override
+    protected Lexer createLexer(File file) throws IOException {
+        PHPLexer lexer = new PHPLexer(support.getCharStream(file));
+        lexer.removeErrorListeners();
+        return lexer;
+    }
+
+    @Override
+    protected ParseTree parse(File file) throws ParseException {
+        return support.parse(file);
+    }
+
+    @Override
+    protected void walk(List<File> files, List<ParseTree> trees, GraphWriter writer) {
+        new Support(writer).walk(files, trees);
+    }
+
+    /**
+     * Language support that works outside of graph command: resolves no class files and emits to the given writer
+     */
+    private static class Support extends LanguageImpl {
+
+        Support(GraphWriter writer) {
+            this.files = Collections.emptySet();
+            this.writer = writer;
+        }
+
+        void walk(List<File> files, List<ParseTree> trees) {
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                processingPath.push(PathUtil.relativizeCwd(file.toPath()));
+                try {
+                    walk(file, trees.get(i));
+                } finally {
+                    processingPath.pop();
+                }
+            }
+        }
+
+        @Override
+        protected CharStream getCharStream(File sourceFile) throws IOException {
+            return super.getCharStream(sourceFile);
+        }
+
+        /**
+         * Class file resolvers are configured by graph(), and there are no other files to process anyway
+         */
+        @Override
+        protected void resolveClass(String fullyQualifiedClassName) {
+        }
+    }
+}
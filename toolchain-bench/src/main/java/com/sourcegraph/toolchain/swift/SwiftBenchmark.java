@@ -0,0 +1,84 @@
+package com.sourcegraph.toolchain.swift;
+
+import com.sourcegraph.toolchain.bench.LanguageBenchmark;
+import com.sourcegraph.toolchain.core.GraphWriter;
+import com.sourcegraph.toolchain.core.PathUtil;
+import com.sourcegraph.toolchain.language.ParseException;
+import com.sourcegraph.toolchain.swift.antlr4.SwiftLexer;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Swift lexer, parser, and parse tree listener benchmarks. Walk includes both passes (defs, then refs)
+ */
+public class SwiftBenchmark extends LanguageBenchmark {
+
+    private final Support support = new Support(null);
+
+    @Override
+    protected String getName() {
+        return "swift";
+    }
+
+    @Override
+    protected Collection<File> collect(File root) throws IOException {
+        return support.getFileCollector(root, null).collect(root);
+    }
+
+    @Override
+    protected Lexer createLexer(File file) throws IOException {
+        SwiftLexer lexer = new SwiftLexer(support.getCharStream(file));
+        lexer.removeErrorListeners();
+        return lexer;
+    }
+
+    @Override
+    protected ParseTree parse(File file) throws ParseException {
+        return support.parse(file);
+    }
+
+    @Override
+    protected void walk(List<File> files, List<ParseTree> trees, GraphWriter writer) {
+        new Support(writer).walk(files, trees);
+    }
+
+    /**
+     * Language support that works outside of graph command and emits to the given writer
+     */
+    private static class Support extends LanguageImpl {
+
+        Support(GraphWriter writer) {
+            this.files = Collections.emptySet();
+            this.writer = writer;
+        }
+
+        void walk(List<File> files, List<ParseTree> trees) {
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                processingPath.push(PathUtil.relativizeCwd(file.toPath()));
+                try {
+                    walk(file, trees.get(i));
+                } finally {
+                    processingPath.pop();
+                }
+            }
+            // second pass to extract refs, see graph()
+            firstPass = false;
+            for (int i = 0; i < files.size(); i++) {
+                processingPath.push(PathUtil.relativizeCwd(files.get(i).toPath()));
+                try {
+                    new ParseTreeWalker().walk(new SwiftParseTreeListener(this), trees.get(i));
+                } finally {
+                    processingPath.pop();
+                }
+            }
+        }
+    }
+}
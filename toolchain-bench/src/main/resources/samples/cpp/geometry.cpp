@@ -0,0 +1,116 @@
+#include <cmath>
+#include "geometry.h"
+
+namespace geometry {
+
+    Point Point::operator+(const Point &other) const {
+        return Point(x + other.x, y + other.y);
+    }
+
+    Point Point::operator-(const Point &other) const {
+        return Point(x - other.x, y - other.y);
+    }
+
+    double Point::distance(const Point &other) const {
+        double dx = x - other.x;
+        double dy = y - other.y;
+        return std::sqrt(dx * dx + dy * dy);
+    }
+
+    Shape::Shape(const std::string &name, Color color) : name(name), color(color) {
+    }
+
+    Shape::~Shape() {
+    }
+
+    void Shape::move(const Point &delta) {
+        origin = origin + delta;
+    }
+
+    Circle::Circle(const Point &center, double radius) : Shape("circle", RED), radius(radius) {
+        origin = center;
+    }
+
+    double Circle::area() const {
+        return PI * radius * radius;
+    }
+
+    double Circle::perimeter() const {
+        return 2 * PI * radius;
+    }
+
+    double Circle::getRadius() const {
+        return radius;
+    }
+
+    Rectangle::Rectangle(const Point &topLeft, double width, double height) :
+            Shape("rectangle", GREEN), width(width), height(height) {
+        origin = topLeft;
+    }
+
+    double Rectangle::area() const {
+        return width * height;
+    }
+
+    double Rectangle::perimeter() const {
+        return 2 * (width + height);
+    }
+
+    bool Rectangle::contains(const Point &point) const {
+        Point d = point - origin;
+        return d.x >= 0 && d.y >= 0 && d.x <= width && d.y <= height;
+    }
+
+    Square::Square(const Point &topLeft, double side) : Rectangle(topLeft, side, side) {
+    }
+
+    double Square::getSide() const {
+        return width;
+    }
+
+    Polygon::Polygon(const std::vector<Point> &points) : Shape("polygon", BLUE), points(points) {
+        if (!points.empty()) {
+            origin = points[0];
+        }
+    }
+
+    double Polygon::area() const {
+        double sum = 0;
+        size_t n = points.size();
+        for (size_t i = 0; i < n; i++) {
+            const Point &a = points[i];
+            const Point &b = points[(i + 1) % n];
+            sum += a.x * b.y - b.x * a.y;
+        }
+        return std::fabs(sum) / 2;
+    }
+
+    double Polygon::perimeter() const {
+        double sum = 0;
+        size_t n = points.size();
+        for (size_t i = 0; i < n; i++) {
+            sum += points[i].distance(points[(i + 1) % n]);
+        }
+        return sum;
+    }
+
+    void Polygon::move(const Point &delta) {
+        Shape::move(delta);
+        for (std::vector<Point>::iterator it = points.begin(); it != points.end(); ++it) {
+            *it = *it + delta;
+        }
+    }
+
+    size_t Polygon::size() const {
+        return points.size();
+    }
+
+    double totalArea(const std::vector<Shape *> &shapes) {
+        double total = 0;
+        for (std::vector<Shape *>::const_iterator it = shapes.begin(); it != shapes.end(); ++it) {
+            total += (*it)->area();
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,118 @@
+#ifndef GEOMETRY_H
+#define GEOMETRY_H
+
+#include <string>
+#include <vector>
+
+namespace geometry {
+
+    const double PI = 3.14159265358979323846;
+
+    struct Point {
+        double x;
+        double y;
+
+        Point() : x(0), y(0) {
+        }
+
+        Point(double x, double y) : x(x), y(y) {
+        }
+
+        Point operator+(const Point &other) const;
+
+        Point operator-(const Point &other) const;
+
+        double distance(const Point &other) const;
+    };
+
+    enum Color {
+        RED,
+        GREEN,
+        BLUE
+    };
+
+    class Shape {
+    public:
+        Shape(const std::string &name, Color color);
+
+        virtual ~Shape();
+
+        virtual double area() const = 0;
+
+        virtual double perimeter() const = 0;
+
+        virtual void move(const Point &delta);
+
+        const std::string &getName() const {
+            return name;
+        }
+
+        Color getColor() const {
+            return color;
+        }
+
+    protected:
+        Point origin;
+
+    private:
+        std::string name;
+        Color color;
+    };
+
+    class Circle : public Shape {
+    public:
+        Circle(const Point &center, double radius);
+
+        double area() const;
+
+        double perimeter() const;
+
+        double getRadius() const;
+
+    private:
+        double radius;
+    };
+
+    class Rectangle : public Shape {
+    public:
+        Rectangle(const Point &topLeft, double width, double height);
+
+        double area() const;
+
+        double perimeter() const;
+
+        bool contains(const Point &point) const;
+
+    protected:
+        double width;
+        double height;
+    };
+
+    class Square : public Rectangle {
+    public:
+        Square(const Point &topLeft, double side);
+
+        double getSide() const;
+    };
+
+    class Polygon : public Shape {
+    public:
+        explicit Polygon(const std::vector<Point> &points);
+
+        double area() const;
+
+        double perimeter() const;
+
+        void move(const Point &delta);
+
+        size_t size() const;
+
+    private:
+        std::vector<Point> points;
+    };
+
+    double totalArea(const std::vector<Shape *> &shapes);
+
+}
+
+#endif
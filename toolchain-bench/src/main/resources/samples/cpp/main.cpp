@@ -0,0 +1,54 @@
+#include <iostream>
+#include <vector>
+#include "geometry.h"
+#include "registry.h"
+
+using namespace geometry;
+
+namespace geometry {
+
+    ShapeRegistry &ShapeRegistry::instance() {
+        static ShapeRegistry registry;
+        return registry;
+    }
+
+    double ShapeRegistry::area(const std::string &key) const {
+        Shape *shape = get(key);
+        return shape == 0 ? 0 : shape->area();
+    }
+
+}
+
+static void print(const Shape &shape) {
+    std::cout << shape.getName() << ": area " << shape.area() << ", perimeter " << shape.perimeter() << std::endl;
+}
+
+int main(int argc, char **argv) {
+    ShapeRegistry &registry = ShapeRegistry::instance();
+    registry.add("c", new Circle(Point(0, 0), 2.5));
+    registry.add("r", new Rectangle(Point(1, 1), 3, 4));
+    registry.add("s", new Square(Point(-1, -1), 2));
+
+    std::vector<Point> points;
+    points.push_back(Point(0, 0));
+    points.push_back(Point(4, 0));
+    points.push_back(Point(4, 3));
+    registry.add("p", new Polygon(points));
+
+    std::vector<Shape *> shapes;
+    const char *keys[] = {"c", "r", "s", "p"};
+    for (int i = 0; i < 4; i++) {
+        Shape *shape = registry.get(keys[i]);
+        shape->move(Point(1, 1));
+        print(*shape);
+        shapes.push_back(shape);
+    }
+
+    Rectangle *rectangle = static_cast<Rectangle *>(registry.get("r"));
+    if (rectangle->contains(Point(2, 2))) {
+        std::cout << "contains" << std::endl;
+    }
+    std::cout << "total " << totalArea(shapes) << ", circle " << registry.area("c") << std::endl;
+    registry.clear();
+    return argc > 1 ? 1 : 0;
+}
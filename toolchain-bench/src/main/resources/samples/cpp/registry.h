@@ -0,0 +1,70 @@
+#ifndef REGISTRY_H
+#define REGISTRY_H
+
+#include <map>
+#include <string>
+#include "geometry.h"
+
+namespace geometry {
+
+    template<typename T>
+    class Registry {
+    public:
+        typedef std::map<std::string, T *> Entries;
+
+        Registry() : count(0) {
+        }
+
+        ~Registry() {
+            clear();
+        }
+
+        void add(const std::string &key, T *value) {
+            typename Entries::iterator it = entries.find(key);
+            if (it != entries.end()) {
+                delete it->second;
+            } else {
+                count++;
+            }
+            entries[key] = value;
+        }
+
+        T *get(const std::string &key) const {
+            typename Entries::const_iterator it = entries.find(key);
+            if (it == entries.end()) {
+                return 0;
+            }
+            return it->second;
+        }
+
+        void clear() {
+            for (typename Entries::iterator it = entries.begin(); it != entries.end(); ++it) {
+                delete it->second;
+            }
+            entries.clear();
+            count = 0;
+        }
+
+        int size() const {
+            return count;
+        }
+
+    private:
+        Entries entries;
+        int count;
+    };
+
+    class ShapeRegistry : public Registry<Shape> {
+    public:
+        static ShapeRegistry &instance();
+
+        double area(const std::string &key) const;
+
+    private:
+        ShapeRegistry() {
+        }
+    };
+
+}
+
+#endif
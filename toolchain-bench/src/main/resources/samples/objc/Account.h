@@ -0,0 +1,55 @@
+#import <Foundation/Foundation.h>
+
+typedef NS_ENUM(NSInteger, AccountType) {
+    AccountTypeChecking,
+    AccountTypeSavings
+};
+
+@class Transaction;
+
+@protocol AccountDelegate <NSObject>
+
+- (void)accountDidChangeBalance:(double)balance;
+
+@optional
+- (void)accountWillClose;
+
+@end
+
+@interface Account : NSObject {
+    NSMutableArray *_transactions;
+}
+
+@property (nonatomic, copy) NSString *owner;
+@property (nonatomic, readonly) double balance;
+@property (nonatomic, assign) AccountType type;
+@property (nonatomic, weak) id<AccountDelegate> delegate;
+
++ (instancetype)accountWithOwner:(NSString *)owner type:(AccountType)type;
+
+- (instancetype)initWithOwner:(NSString *)owner type:(AccountType)type;
+
+- (BOOL)deposit:(double)amount;
+
+- (BOOL)withdraw:(double)amount;
+
+- (NSArray *)transactionsMatching:(BOOL (^)(Transaction *transaction))predicate;
+
+@end
+
+@interface Transaction : NSObject
+
+@property (nonatomic, readonly) double amount;
+@property (nonatomic, readonly, strong) NSDate *date;
+
+- (instancetype)initWithAmount:(double)amount;
+
+@end
+
+@interface SavingsAccount : Account
+
+@property (nonatomic, assign) double rate;
+
+- (void)applyInterest;
+
+@end
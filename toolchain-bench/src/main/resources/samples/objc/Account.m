@@ -0,0 +1,151 @@
+#import "Account.h"
+
+static const double kMinimumBalance = 0.0;
+
+@implementation Transaction
+
+- (instancetype)initWithAmount:(double)amount {
+    self = [super init];
+    if (self) {
+        _amount = amount;
+        _date = [NSDate date];
+    }
+    return self;
+}
+
+- (NSString *)description {
+    return [NSString stringWithFormat:@"%@ %.2f", self.date, self.amount];
+}
+
+@end
+
+@interface Account ()
+
+@property (nonatomic, readwrite) double balance;
+
+- (void)record:(double)amount;
+
+@end
+
+@implementation Account
+
++ (instancetype)accountWithOwner:(NSString *)owner type:(AccountType)type {
+    return [[self alloc] initWithOwner:owner type:type];
+}
+
+- (instancetype)initWithOwner:(NSString *)owner type:(AccountType)type {
+    self = [super init];
+    if (self) {
+        _owner = [owner copy];
+        _type = type;
+        _transactions = [[NSMutableArray alloc] init];
+        _balance = kMinimumBalance;
+    }
+    return self;
+}
+
+- (BOOL)deposit:(double)amount {
+    if (amount <= 0) {
+        return NO;
+    }
+    [self record:amount];
+    return YES;
+}
+
+- (BOOL)withdraw:(double)amount {
+    if (amount <= 0 || self.balance - amount < kMinimumBalance) {
+        return NO;
+    }
+    [self record:-amount];
+    return YES;
+}
+
+- (void)record:(double)amount {
+    Transaction *transaction = [[Transaction alloc] initWithAmount:amount];
+    [_transactions addObject:transaction];
+    self.balance = self.balance + amount;
+    if ([self.delegate respondsToSelector:@selector(accountDidChangeBalance:)]) {
+        [self.delegate accountDidChangeBalance:self.balance];
+    }
+}
+
+- (NSArray *)transactionsMatching:(BOOL (^)(Transaction *transaction))predicate {
+    NSMutableArray *result = [NSMutableArray array];
+    for (Transaction *transaction in _transactions) {
+        if (predicate(transaction)) {
+            [result addObject:transaction];
+        }
+    }
+    return result;
+}
+
+- (void)dealloc {
+    if ([self.delegate respondsToSelector:@selector(accountWillClose)]) {
+        [self.delegate accountWillClose];
+    }
+}
+
+@end
+
+@implementation SavingsAccount
+
+- (void)applyInterest {
+    double interest = self.balance * self.rate / 100.0;
+    if (interest > 0) {
+        [self deposit:interest];
+    }
+}
+
+@end
+
+@interface Bank : NSObject <AccountDelegate>
+
+@property (nonatomic, strong) NSMutableDictionary *accounts;
+
+- (Account *)openAccountFor:(NSString *)owner savings:(BOOL)savings;
+
+@end
+
+@implementation Bank
+
+- (instancetype)init {
+    self = [super init];
+    if (self) {
+        _accounts = [NSMutableDictionary dictionary];
+    }
+    return self;
+}
+
+- (Account *)openAccountFor:(NSString *)owner savings:(BOOL)savings {
+    Account *account;
+    if (savings) {
+        SavingsAccount *savingsAccount = [[SavingsAccount alloc] initWithOwner:owner type:AccountTypeSavings];
+        savingsAccount.rate = 1.5;
+        account = savingsAccount;
+    } else {
+        account = [Account accountWithOwner:owner type:AccountTypeChecking];
+    }
+    account.delegate = self;
+    [self.accounts setObject:account forKey:owner];
+    return account;
+}
+
+- (void)accountDidChangeBalance:(double)balance {
+    NSLog(@"Balance changed to %.2f", balance);
+}
+
+- (double)totalDeposits {
+    double total = 0;
+    for (NSString *owner in self.accounts) {
+        Account *account = [self.accounts objectForKey:owner];
+        NSArray *deposits = [account transactionsMatching:^BOOL(Transaction *transaction) {
+            return transaction.amount > 0;
+        }];
+        for (Transaction *deposit in deposits) {
+            total += deposit.amount;
+        }
+    }
+    return total;
+}
+
+@end
@@ -0,0 +1,144 @@
+<?php
+
+namespace App\Model;
+
+interface Identifiable
+{
+    public function getId();
+}
+
+interface Serializable
+{
+    const FORMAT_JSON = 'json';
+
+    public function toArray();
+}
+
+trait Timestamps
+{
+    protected $createdAt;
+    protected $updatedAt;
+
+    public function touch()
+    {
+        $this->updatedAt = time();
+        if ($this->createdAt === null) {
+            $this->createdAt = $this->updatedAt;
+        }
+    }
+
+    public function getUpdatedAt()
+    {
+        return $this->updatedAt;
+    }
+}
+
+abstract class Model implements Identifiable, Serializable
+{
+    use Timestamps;
+
+    protected static $instances = 0;
+
+    protected $id;
+    protected $attributes = array();
+
+    public function __construct($id, array $attributes = array())
+    {
+        $this->id = $id;
+        $this->attributes = $attributes;
+        static::$instances++;
+        $this->touch();
+    }
+
+    public function getId()
+    {
+        return $this->id;
+    }
+
+    public function get($name, $default = null)
+    {
+        return isset($this->attributes[$name]) ? $this->attributes[$name] : $default;
+    }
+
+    public function set($name, $value)
+    {
+        $this->attributes[$name] = $value;
+        $this->touch();
+        return $this;
+    }
+
+    public function toArray()
+    {
+        return array_merge(array('id' => $this->id), $this->attributes);
+    }
+
+    abstract public function validate();
+
+    public static function count()
+    {
+        return self::$instances;
+    }
+}
+
+class User extends Model
+{
+    const ROLE_ADMIN = 'admin';
+    const ROLE_USER = 'user';
+
+    private $roles = array();
+
+    public function addRole($role)
+    {
+        if (!in_array($role, $this->roles)) {
+            $this->roles[] = $role;
+        }
+        return $this;
+    }
+
+    public function isAdmin()
+    {
+        return in_array(self::ROLE_ADMIN, $this->roles);
+    }
+
+    public function validate()
+    {
+        $email = $this->get('email');
+        return $email !== null && strpos($email, '@') !== false;
+    }
+}
+
+class Post extends Model
+{
+    private $author;
+    private $comments = array();
+
+    public function __construct($id, User $author, array $attributes = array())
+    {
+        parent::__construct($id, $attributes);
+        $this->author = $author;
+    }
+
+    public function getAuthor()
+    {
+        return $this->author;
+    }
+
+    public function addComment(User $user, $text)
+    {
+        $this->comments[] = array('user' => $user, 'text' => $text);
+        $this->touch();
+    }
+
+    public function validate()
+    {
+        return strlen($this->get('title', '')) > 0 && $this->author->validate();
+    }
+
+    public function toArray()
+    {
+        $data = parent::toArray();
+        $data['author'] = $this->author->getId();
+        $data['comments'] = count($this->comments);
+        return $data;
+    }
+}
@@ -0,0 +1,94 @@
+<?php
+
+namespace App\Repository;
+
+use App\Model\Model;
+use App\Model\Post;
+use App\Model\User;
+
+class NotFoundException extends \Exception
+{
+}
+
+class Repository implements \Countable
+{
+    protected $items = array();
+
+    public function add(Model $model)
+    {
+        if (!$model->validate()) {
+            throw new \InvalidArgumentException('Invalid model ' . $model->getId());
+        }
+        $this->items[$model->getId()] = $model;
+    }
+
+    public function find($id)
+    {
+        if (!array_key_exists($id, $this->items)) {
+            throw new NotFoundException("Model $id not found");
+        }
+        return $this->items[$id];
+    }
+
+    public function filter($callback)
+    {
+        $result = array();
+        foreach ($this->items as $id => $item) {
+            if (call_user_func($callback, $item)) {
+                $result[$id] = $item;
+            }
+        }
+        return $result;
+    }
+
+    public function count()
+    {
+        return count($this->items);
+    }
+}
+
+class PostRepository extends Repository
+{
+    public function byAuthor(User $author)
+    {
+        return $this->filter(function (Post $post) use ($author) {
+            return $post->getAuthor()->getId() === $author->getId();
+        });
+    }
+
+    public function export($format = Model::FORMAT_JSON)
+    {
+        $data = array();
+        foreach ($this->items as $post) {
+            $data[] = $post->toArray();
+        }
+        switch ($format) {
+            case Model::FORMAT_JSON:
+                return json_encode($data);
+            default:
+                return serialize($data);
+        }
+    }
+}
+
+$users = new Repository();
+$admin = new User(1, array('email' => 'admin@example.com'));
+$admin->addRole(User::ROLE_ADMIN)->addRole(User::ROLE_USER);
+$users->add($admin);
+
+$posts = new PostRepository();
+for ($i = 1; $i <= 3; $i++) {
+    $post = new Post($i, $admin, array('title' => "Post $i"));
+    $post->addComment($admin, 'First!');
+    $posts->add($post);
+}
+
+try {
+    $posts->find(42);
+} catch (NotFoundException $e) {
+    echo $e->getMessage(), PHP_EOL;
+}
+
+echo count($posts->byAuthor($admin)), ' posts by ', $admin->get('email'), PHP_EOL;
+echo $posts->export(), PHP_EOL;
+echo Model::count(), ' models', PHP_EOL;
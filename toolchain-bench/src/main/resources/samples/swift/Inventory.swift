@@ -0,0 +1,162 @@
+import Foundation
+
+protocol Identifiable {
+    var id: String { get }
+}
+
+protocol Priced {
+    var price: Double { get }
+    func discounted(by percent: Double) -> Double
+}
+
+extension Priced {
+    func discounted(by percent: Double) -> Double {
+        return price * (100 - percent) / 100
+    }
+}
+
+enum Category {
+    case food
+    case clothing
+    case electronics(warrantyYears: Int)
+}
+
+struct Item: Identifiable, Priced {
+    let id: String
+    var name: String
+    var price: Double
+    var category: Category
+
+    init(id: String, name: String, price: Double, category: Category) {
+        self.id = id
+        self.name = name
+        self.price = price
+        self.category = category
+    }
+
+    var isExpensive: Bool {
+        return price > 100
+    }
+}
+
+class Inventory {
+    private var items = [String: Item]()
+    private var quantities = [String: Int]()
+
+    var count: Int {
+        return items.count
+    }
+
+    func add(item: Item, quantity: Int) {
+        items[item.id] = item
+        let current = quantities[item.id] ?? 0
+        quantities[item.id] = current + quantity
+    }
+
+    func remove(id: String, quantity: Int) -> Bool {
+        guard let current = quantities[id] else {
+            return false
+        }
+        if current < quantity {
+            return false
+        }
+        quantities[id] = current - quantity
+        return true
+    }
+
+    func item(withId id: String) -> Item? {
+        return items[id]
+    }
+
+    func quantity(of id: String) -> Int {
+        if let quantity = quantities[id] {
+            return quantity
+        }
+        return 0
+    }
+
+    func totalValue() -> Double {
+        var total = 0.0
+        for (id, item) in items {
+            total += item.price * Double(quantity(of: id))
+        }
+        return total
+    }
+
+    func filter(predicate: (Item) -> Bool) -> [Item] {
+        var result = [Item]()
+        for item in items.values {
+            if predicate(item) {
+                result.append(item)
+            }
+        }
+        return result
+    }
+}
+
+class Store {
+    let name: String
+    let inventory: Inventory
+    var discount: Double = 0
+
+    init(name: String) {
+        self.name = name
+        self.inventory = Inventory()
+    }
+
+    func price(of id: String) -> Double? {
+        guard let item = inventory.item(withId: id) else {
+            return nil
+        }
+        return item.discounted(by: discount)
+    }
+
+    func sell(id: String, quantity: Int) -> Double {
+        if !inventory.remove(id: id, quantity: quantity) {
+            return 0
+        }
+        if let price = price(of: id) {
+            return price * Double(quantity)
+        }
+        return 0
+    }
+
+    func expensiveItems() -> [Item] {
+        return inventory.filter { item in
+            return item.isExpensive
+        }
+    }
+}
+
+class OutletStore: Store {
+    override init(name: String) {
+        super.init(name: name)
+        discount = 30
+    }
+
+    override func sell(id: String, quantity: Int) -> Double {
+        let total = super.sell(id: id, quantity: quantity)
+        return total > 1000 ? total * 0.95 : total
+    }
+}
+
+func describe(category: Category) -> String {
+    switch category {
+    case .food:
+        return "food"
+    case .clothing:
+        return "clothing"
+    case .electronics(let years):
+        return "electronics, warranty \(years) years"
+    }
+}
+
+let store = OutletStore(name: "outlet")
+store.inventory.add(item: Item(id: "1", name: "apple", price: 0.5, category: .food), quantity: 100)
+store.inventory.add(item: Item(id: "2", name: "coat", price: 250, category: .clothing), quantity: 3)
+store.inventory.add(item: Item(id: "3", name: "phone", price: 700, category: .electronics(warrantyYears: 2)), quantity: 5)
+let revenue = store.sell(id: "3", quantity: 2)
+print("revenue \(revenue), stock value \(store.inventory.totalValue())")
+for item in store.expensiveItems() {
+    print("\(item.name): \(describe(category: item.category))")
+}
@@ -0,0 +1,48 @@
+package com.sourcegraph.toolchain.application;
+
+import com.beust.jcommander.Parameter;
+import com.sourcegraph.toolchain.core.BinaryGraphDecoder;
+import com.sourcegraph.toolchain.core.GraphEncoder;
+import com.sourcegraph.toolchain.core.JSONGraphEncoder;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+
+/**
+ * Converts graph produced by "graph --format binary" to JSON
+ */
+public class ConvertCommand {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConvertCommand.class);
+
+    @Parameter(names = {"--input"}, description = "The path to a binary graph file, STDIN is used if not set")
+    String input;
+
+    @Parameter(names = {"--compact"}, description = "Write compact JSON (no indentation and line breaks)")
+    boolean compact;
+
+    /**
+     * Main method
+     * @param stdin standard input
+     * @param out stream to write JSON graph to
+     * @return exit code
+     */
+    public int Execute(InputStream stdin, OutputStream out) {
+        try (InputStream in = StringUtils.isEmpty(input) ?
+                stdin :
+                Files.newInputStream(FileSystems.getDefault().getPath(input));
+             GraphEncoder encoder = new JSONGraphEncoder(out, compact)) {
+            new BinaryGraphDecoder(in).decode(encoder);
+        } catch (IOException e) {
+            LOGGER.error("Failed to convert graph", e);
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -5,6 +5,8 @@ import com.sourcegraph.toolchain.core.JSONUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collections;
 
 public class DepresolveCommand {
@@ -16,9 +18,13 @@ public class DepresolveCommand {
 
     /**
      * Main method
+     * @param in standard input
+     * @param out stream to write dependencies to
+     * @return exit code
      */
-    public void Execute() {
-        JSONUtil.writeJSON(Collections.emptyList());
+    public int Execute(InputStream in, OutputStream out) {
+        JSONUtil.writeJSON(Collections.emptyList(), out);
+        return 0;
     }
 
 }
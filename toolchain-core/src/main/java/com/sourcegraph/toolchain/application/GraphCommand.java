@@ -2,26 +2,21 @@ package com.sourcegraph.toolchain.application;
 
 import com.beust.jcommander.Parameter;
 import com.google.gson.Gson;
-import com.sourcegraph.toolchain.core.GraphData;
-import com.sourcegraph.toolchain.core.JSONUtil;
+import com.sourcegraph.toolchain.core.*;
 import com.sourcegraph.toolchain.core.objects.Def;
 import com.sourcegraph.toolchain.core.objects.DefKey;
 import com.sourcegraph.toolchain.core.objects.Ref;
 import com.sourcegraph.toolchain.core.objects.SourceUnit;
-import com.sourcegraph.toolchain.language.Language;
-import com.sourcegraph.toolchain.language.LanguageRegistry;
+import com.sourcegraph.toolchain.language.*;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.*;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 
 public class GraphCommand {
@@ -31,17 +26,63 @@ public class GraphCommand {
     @Parameter(names = {"--debug-unit-file"}, description = "The path to a source unit input file, which will be read as though it came from stdin. Used to mimic stdin when you can't actually pipe to stdin (e.g., in IntelliJ run configurations).")
     String debugUnitFile;
 
+    @Parameter(names = {"--threads"}, description = "Number of threads to parse source files with. Output does not depend on the number of threads")
+    int threads = 1;
+
+    @Parameter(names = {"--stream"}, description = "Write defs and refs as soon as they are emitted instead of collecting the whole graph in memory")
+    boolean stream;
+
+    @Parameter(names = {"--spill-threshold"}, description = "Keep at most given number of defs and refs in memory, spilling sorted runs to temporary files and merging them when graph is built. Defs and refs are written ordered by their keys")
+    int spillThreshold;
+
+    @Parameter(names = {"--compact"}, description = "Write compact JSON (no indentation and line breaks)")
+    boolean compact;
+
+    @Parameter(names = {"--format"}, description = "Output format, json or binary. Binary output can be turned back into JSON with the convert command")
+    String format = "json";
+
+    @Parameter(names = {"--cache-dir"}, description = "Directory to keep parse cache in. Files that did not change since the previous run (and whose dependencies' declarations did not change) are replayed from cache instead of being parsed")
+    String cacheDir;
+
+    @Parameter(names = {"--max-file-bytes"}, description = "Skip source files larger than given number of bytes")
+    long maxFileBytes;
+
+    @Parameter(names = {"--max-file-tokens"}, description = "Stop parsing source file when it produced more than given number of tokens")
+    int maxFileTokens;
+
+    @Parameter(names = {"--max-file-seconds"}, description = "Stop parsing source file when it takes more than given number of seconds. Note that first files parsed also pay for parser warm-up")
+    int maxFileSeconds;
+
+    @Parameter(names = {"--degraded-report"}, description = "File to write JSON list of source files that exceeded parse limits to")
+    String degradedReport;
+
+    @Parameter(names = {"--metrics-out"}, description = "File to write JSON report with per-file lex, parse, walk, and emit time and allocations to")
+    String metricsOut;
+
+    @Parameter(names = {"--metrics-top"}, description = "Number of the slowest files to include into metrics report")
+    int metricsTop = 10;
+
+    /**
+     * The Source Unit that is read in from STDIN
+     */
+    private SourceUnit unit;
+
+    private ParseCache cache;
+
     /**
-     * The Source Unit that is read in from STDIN. Defined here, so that it can be
-     * accessed within the anonymous classes below.
+     * Time and allocations (of the current thread) spent building graph and writing it
      */
-    public static SourceUnit unit;
+    private FileMetrics.Phase graphPhase = new FileMetrics.Phase();
+    private FileMetrics.Phase writePhase = new FileMetrics.Phase();
 
     /**
      * Main method
+     * @param in standard input to read source unit from
+     * @param out stream to write graph to
+     * @return exit code
      */
     @SuppressWarnings("unchecked")
-    public void Execute() {
+    public int Execute(InputStream in, OutputStream out) {
 
         try {
             Reader r;
@@ -49,64 +90,218 @@ public class GraphCommand {
                 LOGGER.debug("Reading source unit JSON data from {}", debugUnitFile);
                 r = Files.newBufferedReader(FileSystems.getDefault().getPath(debugUnitFile));
             } else {
-                r = new InputStreamReader(System.in);
+                r = new InputStreamReader(in);
             }
             unit = new Gson().fromJson(r, SourceUnit.class);
             r.close();
         } catch (IOException e) {
             LOGGER.error("Failed to read source unit data", e);
-            System.exit(1);
+            return 1;
         }
         LOGGER.info("Building graph for {} unit {}", unit.Type, unit.Name);
 
-        GraphData writer = new GraphData();
-
         Language language = LanguageRegistry.getInstance().get(unit.Type);
         if (language == null) {
             LOGGER.error("Found no support for {}", unit.Type);
-            System.exit(1);
+            return 1;
+        }
+
+        if (!"json".equals(format) && !"binary".equals(format)) {
+            LOGGER.error("Unsupported output format {}", format);
+            return 1;
+        }
+
+        if (stream && spillThreshold > 0) {
+            LOGGER.error("--stream and --spill-threshold cannot be used together");
+            return 1;
+        }
+
+        if (stream || spillThreshold > 0) {
+            return graphStreaming(language, out);
         }
 
+        GraphData writer = new GraphData(language.getSymbolTable());
+
         try {
             LOGGER.debug("Starting graph collection");
-            language.setSourceUnit(unit);
-            language.setGraphWriter(writer);
+            configure(language, writer);
+            long nanos = System.nanoTime();
+            long bytes = FileMetrics.allocatedBytes();
             language.graph();
+            graphPhase.add(System.nanoTime() - nanos, FileMetrics.allocatedBytes() - bytes);
             LOGGER.debug("Graph collection complete");
+            reportCache();
+            reportDegraded(language);
             writer.flush();
         } catch (Exception e) {
             LOGGER.error("Unexpected error occurred while building graph", e);
-            System.exit(1);
+            return 1;
+        }
+
+        long nanos = System.nanoTime();
+        long bytes = FileMetrics.allocatedBytes();
+        try (GraphEncoder encoder = newEncoder(out, language)) {
+            write(language, writer, encoder);
+        } catch (IOException e) {
+            LOGGER.error("Failed to write graph", e);
+            return 1;
+        }
+        writePhase.add(System.nanoTime() - nanos, FileMetrics.allocatedBytes() - bytes);
+        return reportMetrics(language);
+    }
+
+    /**
+     * Builds graph writing defs and refs as soon as they are emitted (--stream) or spilling them to temporary files
+     * (--spill-threshold)
+     * @param language language support
+     * @param out stream to write graph to
+     * @return exit code
+     */
+    private int graphStreaming(Language language, OutputStream out) {
+        try {
+            if (spillThreshold > 0) {
+                return graphStreaming(language,
+                        new SpillingGraphWriter(newEncoder(out, language), language::resolveAll, spillThreshold));
+            }
+            return graphStreaming(language,
+                    new StreamingGraphWriter(newEncoder(out, language),
+                            language.getSymbolTable(),
+                            language::resolveAll));
+        } catch (IOException e) {
+            LOGGER.error("Failed to prepare graph writer", e);
+            return 1;
+        }
+    }
+
+    /**
+     * Builds graph using writer that outputs graph when closed
+     * @param language language support
+     * @param graphWriter graph writer to use
+     * @return exit code
+     */
+    private <W extends GraphWriter & Closeable> int graphStreaming(Language language, W writer) {
+        try {
+            LOGGER.debug("Starting graph collection");
+            configure(language, writer);
+            long nanos = System.nanoTime();
+            long bytes = FileMetrics.allocatedBytes();
+            language.graph();
+            graphPhase.add(System.nanoTime() - nanos, FileMetrics.allocatedBytes() - bytes);
+            LOGGER.debug("Graph collection complete");
+            reportCache();
+            reportDegraded(language);
+        } catch (Exception e) {
+            LOGGER.error("Unexpected error occurred while building graph", e);
+            IOUtils.closeQuietly(writer);
+            return 1;
+        }
+
+        // closing writer resolves reference candidates and writes output
+        long nanos = System.nanoTime();
+        long bytes = FileMetrics.allocatedBytes();
+        try {
+            writer.close();
+        } catch (Exception e) {
+            LOGGER.error("Failed to write graph", e);
+            return 1;
+        }
+        writePhase.add(System.nanoTime() - nanos, FileMetrics.allocatedBytes() - bytes);
+        return reportMetrics(language);
+    }
+
+    /**
+     * Prepares language support to build graph
+     * @param language language support
+     * @param writer graph writer to use
+     * @throws IOException
+     */
+    private void configure(Language language, GraphWriter writer) throws IOException {
+        language.setSourceUnit(unit);
+        language.setGraphWriter(writer);
+        language.setThreads(threads);
+        language.setParseBudget(new ParseBudget(maxFileBytes, maxFileTokens, maxFileSeconds * 1000L));
+        language.setCollectMetrics(!StringUtils.isEmpty(metricsOut));
+        if (!StringUtils.isEmpty(cacheDir)) {
+            cache = new ParseCache(new File(cacheDir), ParseCache.codeVersion(language.getClass(), ParseCache.class));
+            language.setParseCache(cache);
+        }
+    }
+
+    private void reportCache() {
+        if (cache != null && cache.getHits() + cache.getMisses() > 0) {
+            LOGGER.info("Parse cache: {} files replayed, {} files parsed", cache.getHits(), cache.getMisses());
+        }
+    }
+
+    /**
+     * Writes files that exceeded parse budget to the report file if requested
+     * @throws IOException
+     */
+    private void reportDegraded(Language language) throws IOException {
+        if (StringUtils.isEmpty(degradedReport)) {
+            return;
+        }
+        JSONUtil.writeJSON(language.getDegradedFiles(),
+                Files.newOutputStream(FileSystems.getDefault().getPath(degradedReport)));
+    }
+
+    /**
+     * Writes metrics report if requested
+     * @return exit code
+     */
+    private int reportMetrics(Language language) {
+        if (StringUtils.isEmpty(metricsOut)) {
+            return 0;
+        }
+        MetricsReport report = new MetricsReport(language.getName(), unit.Name, language.getFileMetrics(), metricsTop);
+        report.Degraded = language.getDegradedFiles().size();
+        report.Graph = graphPhase;
+        report.Write = writePhase;
+        try {
+            JSONUtil.writeJSON(report, Files.newOutputStream(FileSystems.getDefault().getPath(metricsOut)));
+        } catch (IOException e) {
+            LOGGER.error("Failed to write metrics", e);
+            return 1;
         }
+        LOGGER.info("Graph built in {} ms, written in {} ms, metrics written to {}",
+                graphPhase.Millis,
+                writePhase.Millis,
+                metricsOut);
+        return 0;
+    }
 
-        JSONUtil.writeJSON(normalize(language, writer));
+    /**
+     * @param out stream to write graph to
+     * @param language language support that built graph
+     * @return encoder that writes graph in the requested format
+     */
+    private GraphEncoder newEncoder(OutputStream out, Language language) throws IOException {
+        if ("binary".equals(format)) {
+            return new BinaryGraphEncoder(out, language.getFileRegistry());
+        }
+        return new JSONGraphEncoder(out, compact, language.getFileRegistry());
     }
 
-    private Graph normalize(Language language, GraphData data) {
+    /**
+     * Resolves reference candidates and writes graph
+     */
+    private void write(Language language, GraphData data, GraphEncoder encoder) throws IOException {
 
-        Map<DefKey, DefKey> resolutions = new HashMap<>();
-        Graph g = new Graph();
-        g.Defs = data.getDefs();
-        Collection<Ref> refs = data.getRefs();
-        for (Ref ref : refs) {
+        for (Def def : data.getDefs()) {
+            encoder.writeDef(def);
+        }
+        Collection<DefKey> candidates = data.getCandidateKeys();
+        Map<DefKey, DefKey> resolutions = language.resolveAll(candidates);
+        LOGGER.debug("Resolved {} of {} reference candidate keys", resolutions.size(), candidates.size());
+        for (Ref ref : data.getRefs()) {
             if (ref.candidate) {
                 DefKey adjusted = resolutions.get(ref.defKey);
                 if (adjusted == null) {
-                    adjusted = language.resolve(ref.defKey);
-                    if (adjusted == null) {
-                        continue;
-                    }
-                    resolutions.put(ref.defKey, adjusted);
+                    continue;
                 }
                 ref.defKey = adjusted;
             }
-            g.Refs.add(ref);
+            encoder.writeRef(ref);
         }
-        return g;
-    }
-
-    private static class Graph {
-        Collection<Def> Defs = new ArrayList<>();
-        Collection<Ref> Refs = new ArrayList<>();
     }
 }
@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Properties;
 
 /**
@@ -28,42 +29,67 @@ public class Main {
             LOGGER.debug("Command line arguments [{}]", StringUtils.join(args, ' '));
         }
 
+        int exitCode = run(args, System.in, System.out, true);
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * Parses command line and executes command. Each call works with its own command instances
+     * @param args command line arguments
+     * @param in standard input of command
+     * @param out standard output of command
+     * @param allowServe if serve command is available
+     * @return exit code
+     */
+    static int run(String[] args, InputStream in, OutputStream out, boolean allowServe) {
+
         JCommander jc = new JCommander();
 
         // Add subcommands
         ScanCommand scan = new ScanCommand();
         GraphCommand graph = new GraphCommand();
         DepresolveCommand depresolve = new DepresolveCommand();
+        ConvertCommand convert = new ConvertCommand();
+        ServeCommand serve = new ServeCommand();
 
         jc.addCommand("scan", scan);
         jc.addCommand("graph", graph);
         jc.addCommand("depresolve", depresolve);
+        jc.addCommand("convert", convert);
+        if (allowServe) {
+            jc.addCommand("serve", serve);
+        }
 
         try {
             jc.parse(args);
         } catch (Exception e) {
             LOGGER.error("Unable to parse command line arguments", e);
-            System.exit(1);
+            return 1;
         }
 
-        switch (jc.getParsedCommand()) {
+        String command = StringUtils.defaultString(jc.getParsedCommand());
+        switch (command) {
             case "scan":
-                scan.Execute();
-                break;
+                return scan.Execute(in, out);
             case "graph":
-                graph.Execute();
-                break;
+                return graph.Execute(in, out);
             case "depresolve":
-                depresolve.Execute();
-                break;
+                return depresolve.Execute(in, out);
+            case "convert":
+                return convert.Execute(in, out);
+            case "serve":
+                return serve.Execute(in, out);
             default:
-                LOGGER.error("Unknown command {}", jc.getParsedCommand());
-                jc.usage();
-                System.exit(1);
+                StringBuilder usage = new StringBuilder();
+                jc.usage(usage);
+                LOGGER.error("Unknown command {}\n{}", command, usage);
+                return 1;
         }
     }
 
-    private static String getVersion() {
+    static String getVersion() {
         String version = "development";
         try {
             InputStream manifestInputStream = Main.class.getResourceAsStream("/META-INF/MANIFEST.MF");
@@ -0,0 +1,114 @@
+package com.sourcegraph.toolchain.application;
+
+import com.sourcegraph.toolchain.language.FileMetrics;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Metrics report written by graph command: totals per language and the slowest files
+ */
+class MetricsReport {
+
+    String Language;
+
+    String Unit;
+
+    /**
+     * Number of processed files
+     */
+    int Files;
+
+    /**
+     * Number of files that needed full LL prediction
+     */
+    int LlFallbacks;
+
+    /**
+     * Number of files replayed from parse cache
+     */
+    int Replayed;
+
+    /**
+     * Number of files that exceeded parse budget
+     */
+    int Degraded;
+
+    /**
+     * Building graph (all files, including parsing on other threads)
+     */
+    FileMetrics.Phase Graph = new FileMetrics.Phase();
+
+    /**
+     * Resolving reference candidates and writing output
+     */
+    FileMetrics.Phase Write = new FileMetrics.Phase();
+
+    /**
+     * Sum of all files' metrics
+     */
+    Totals Totals = new Totals();
+
+    /**
+     * Files with the largest total time
+     */
+    List<FileMetrics> Slowest;
+
+    /**
+     * @param language language name
+     * @param unit unit name
+     * @param files metrics of processed files
+     * @param top how many slowest files to include
+     */
+    MetricsReport(String language, String unit, Collection<FileMetrics> files, int top) {
+        this.Language = language;
+        this.Unit = unit;
+        this.Files = files.size();
+        for (FileMetrics file : files) {
+            Totals.add(file);
+            if (file.LlFallback) {
+                LlFallbacks++;
+            }
+            if (file.Replayed) {
+                Replayed++;
+            }
+        }
+        this.Slowest = files.stream().
+                sorted(Comparator.comparingLong((FileMetrics file) -> file.Total.getNanos()).reversed()).
+                limit(top).
+                collect(Collectors.toList());
+    }
+
+    /**
+     * Sum of phases and tokens of multiple files
+     */
+    static class Totals {
+
+        FileMetrics.Phase Lex = new FileMetrics.Phase();
+
+        FileMetrics.Phase Parse = new FileMetrics.Phase();
+
+        FileMetrics.Phase Walk = new FileMetrics.Phase();
+
+        FileMetrics.Phase Emit = new FileMetrics.Phase();
+
+        FileMetrics.Phase Total = new FileMetrics.Phase();
+
+        long Tokens;
+
+        /**
+         * Adds metrics of a file
+         * @param file metrics to add
+         */
+        void add(FileMetrics file) {
+            Lex.add(file.Lex);
+            Parse.add(file.Parse);
+            Walk.add(file.Walk);
+            Emit.add(file.Emit);
+            Total.add(file.Total);
+            Tokens += file.Tokens;
+        }
+    }
+}
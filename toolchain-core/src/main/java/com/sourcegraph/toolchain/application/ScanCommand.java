@@ -5,10 +5,14 @@ import com.sourcegraph.toolchain.core.JSONUtil;
 import com.sourcegraph.toolchain.core.PathUtil;
 import com.sourcegraph.toolchain.core.objects.SourceUnit;
 import com.sourcegraph.toolchain.language.LanguageRegistry;
+import com.sourcegraph.toolchain.language.ScanIndex;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -25,10 +29,16 @@ class ScanCommand {
     @Parameter(names = {"--subdir"}, description = "The path of the current directory (in which the scanner is run), relative to the root directory of the repository being scanned (this is typically the root, \".\", as it is most useful to scan the entire repository)")
     String subdir;
 
+    @Parameter(names = {"--index-file"}, description = "File to keep scan index in. Directories that did not change since the previous scan are not listed again")
+    String indexFile;
+
     /**
      * Main method
+     * @param in standard input
+     * @param out stream to write source units to
+     * @return exit code
      */
-    public void Execute() {
+    public int Execute(InputStream in, OutputStream out) {
 
         try {
             if (repoURI == null) {
@@ -37,13 +47,17 @@ class ScanCommand {
             if (subdir == null) {
                 subdir = ".";
             }
-            Collection<SourceUnit> units = LanguageRegistry.getInstance().getSourceUnits(PathUtil.CWD.toFile(), repoURI);
+            ScanIndex index = StringUtils.isEmpty(indexFile) ? null : new ScanIndex(new File(indexFile));
+            Collection<SourceUnit> units = LanguageRegistry.getInstance().getSourceUnits(PathUtil.CWD.toFile(),
+                    repoURI,
+                    index);
             normalize(units, repoURI);
-            JSONUtil.writeJSON(units);
+            JSONUtil.writeJSON(units, out);
         } catch (Exception e) {
             LOGGER.error("Unexpected error occurred while collecting source units", e);
-            System.exit(1);
+            return 1;
         }
+        return 0;
     }
 
     /**
@@ -0,0 +1,335 @@
+package com.sourcegraph.toolchain.application;
+
+import com.beust.jcommander.Parameter;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sourcegraph.toolchain.core.PathUtil;
+import com.sourcegraph.toolchain.language.LanguageRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived daemon that keeps JVM and ANTLR DFA caches warm between scan, graph, depresolve, and convert requests.
+ * Requests are read either from loopback TCP port (one request per connection) or from STDIN.
+ * Request is a JSON object {"Args":["graph","--compact"],"Dir":"/path/to/repo","Input":{...},"Token":"..."} where
+ * Args are command line arguments, Dir (optional) must point to daemon's working directory, Input (optional) is JSON
+ * value passed to command as STDIN (source unit for graph command), and Token is daemon's secret (TCP mode only).
+ * Response is a JSON line {"ExitCode":0,"Length":N,"Error":null} followed by N bytes of command output.
+ * Each request gets its own command and language support instances.
+ * Trust model: requests are executed with the privileges of daemon's owner. Anyone who can write to STDIN is trusted.
+ * Loopback TCP port is open to every local user, thus in TCP mode daemon generates random token, publishes it together
+ * with port number in the port file readable by owner only, and rejects requests that do not carry the token.
+ * Additionally, served requests may not expand arguments from files ("@file") and may only point options that take
+ * paths (see {@link #PATH_OPTIONS}) inside daemon's working directory
+ */
+public class ServeCommand {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServeCommand.class);
+
+    /**
+     * Options of served commands that take paths to read or write
+     */
+    private static final Set<String> PATH_OPTIONS = new HashSet<>(Arrays.asList(
+            "--debug-unit-file",
+            "--cache-dir",
+            "--degraded-report",
+            "--metrics-out",
+            "--index-file",
+            "--input"));
+
+    /**
+     * Token size in bytes
+     */
+    private static final int TOKEN_SIZE = 32;
+
+    @Parameter(names = {"--port"}, description = "Loopback TCP port to listen on, 0 picks any free port. Requests are read from STDIN if not set")
+    Integer port;
+
+    @Parameter(names = {"--port-file"}, description = "File to write port number and request token to once daemon is ready to accept requests, removed on exit. Required in TCP mode")
+    String portFile;
+
+    @Parameter(names = {"--workers"}, description = "Number of requests to serve concurrently (TCP mode only)")
+    int workers = 1;
+
+    @Parameter(names = {"--idle-timeout"}, description = "Seconds to wait for the next request before exiting (TCP mode only), 0 waits forever")
+    int idleTimeout = 600;
+
+    private final Gson gson = new Gson();
+
+    /**
+     * Main method
+     * @param in stream to read requests from if no port is set
+     * @param out stream to write responses to if no port is set
+     * @return exit code
+     */
+    public int Execute(InputStream in, OutputStream out) {
+        // discover languages before serving any request
+        LanguageRegistry.getInstance();
+        if (port != null && portFile == null) {
+            LOGGER.error("--port-file is required to publish request token when serving TCP port");
+            return 1;
+        }
+        try {
+            if (port == null) {
+                serveStream(in, out);
+            } else {
+                serveSocket(newToken());
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to serve requests", e);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Serves requests from input stream one by one until end of stream
+     */
+    private void serveStream(InputStream in, OutputStream out) throws IOException {
+        LOGGER.info("Serving requests from STDIN in {}", PathUtil.CWD);
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.setLenient(true);
+        while (reader.peek() != JsonToken.END_DOCUMENT) {
+            serve(reader, out, null);
+        }
+    }
+
+    /**
+     * Serves requests from loopback TCP port until idle timeout expires
+     * @param token token requests must carry
+     */
+    private void serveSocket(String token) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(workers, 1));
+        AtomicInteger active = new AtomicInteger();
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout((int) TimeUnit.SECONDS.toMillis(idleTimeout));
+            writePortFile(server.getLocalPort(), token);
+            LOGGER.info("Serving requests on port {} in {}", server.getLocalPort(), PathUtil.CWD);
+            while (true) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    if (active.get() > 0) {
+                        continue;
+                    }
+                    LOGGER.info("No requests for {} seconds, exiting", idleTimeout);
+                    break;
+                }
+                active.incrementAndGet();
+                executor.execute(() -> {
+                    try (Socket s = socket) {
+                        JsonReader reader = new JsonReader(new InputStreamReader(s.getInputStream(),
+                                StandardCharsets.UTF_8));
+                        reader.setLenient(true);
+                        serve(reader, s.getOutputStream(), token);
+                    } catch (Exception e) {
+                        LOGGER.warn("Failed to serve request", e);
+                    } finally {
+                        active.decrementAndGet();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            Files.deleteIfExists(Paths.get(portFile));
+        }
+    }
+
+    /**
+     * Reads single request, executes it and writes response
+     * @param token token request must carry, null if any request is trusted
+     */
+    private void serve(JsonReader reader, OutputStream out, String token) throws IOException {
+        Request request = gson.fromJson(reader, Request.class);
+        Response response = new Response();
+        Path output = Files.createTempFile("srclib-basic-response", ".out");
+        try {
+            if (token != null && (request == null || !isToken(request.Token, token))) {
+                response.ExitCode = 1;
+                response.Error = "Invalid token";
+            } else if (request == null || request.Args == null || request.Args.isEmpty()) {
+                response.ExitCode = 1;
+                response.Error = "No command given";
+            } else if (!isCwd(request.Dir)) {
+                response.ExitCode = 1;
+                response.Error = "Daemon serves " + PathUtil.CWD + ", not " + request.Dir;
+            } else {
+                response.Error = checkArgs(request.Args);
+                response.ExitCode = response.Error == null ? execute(request, output) : 1;
+            }
+            if (response.Error != null) {
+                LOGGER.error(response.Error);
+            }
+            response.Length = Files.size(output);
+            out.write(gson.toJson(response).getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+            Files.copy(output, out);
+            out.flush();
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    /**
+     * Executes request writing command's output to the given file
+     * @return exit code
+     */
+    private int execute(Request request, Path output) throws IOException {
+        String[] args = request.Args.toArray(new String[request.Args.size()]);
+        LOGGER.info("Serving [{}]", StringUtils.join(args, ' '));
+        byte[] input = request.Input == null || request.Input.isJsonNull() ?
+                new byte[0] :
+                request.Input.toString().getBytes(StandardCharsets.UTF_8);
+        long start = System.currentTimeMillis();
+        int exitCode;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            exitCode = Main.run(args, new ByteArrayInputStream(input), out, false);
+        } catch (RuntimeException e) {
+            LOGGER.error("Unexpected error occurred while serving request", e);
+            exitCode = 1;
+        }
+        LOGGER.info("Served [{}] with exit code {} in {} ms",
+                StringUtils.join(args, ' '),
+                exitCode,
+                System.currentTimeMillis() - start);
+        return exitCode;
+    }
+
+    /**
+     * @param dir directory request was made from
+     * @return true if dir is not set or points to the daemon's working directory
+     */
+    private static boolean isCwd(String dir) {
+        if (dir == null) {
+            return true;
+        }
+        try {
+            return Paths.get(dir).toRealPath().equals(PathUtil.CWD.toRealPath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param value token request carries
+     * @param token daemon's token
+     * @return true if tokens are equal, compares in time that does not depend on the content
+     */
+    private static boolean isToken(String value, String token) {
+        return value != null && MessageDigest.isEqual(value.getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param args command line arguments of request
+     * @return error message if arguments refer to files daemon should not read or write, null otherwise
+     */
+    private static String checkArgs(List<String> args) {
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (arg == null) {
+                continue;
+            }
+            if (arg.startsWith("@")) {
+                return "Argument files are not allowed in served requests";
+            }
+            String option = arg;
+            String value = null;
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                option = arg.substring(0, separator);
+                value = arg.substring(separator + 1);
+            } else if (i + 1 < args.size()) {
+                value = args.get(i + 1);
+            }
+            if (PATH_OPTIONS.contains(option) && value != null && !isInsideCwd(value)) {
+                return option + " must point inside " + PathUtil.CWD + " in served requests";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param path path to check, relative to daemon's working directory
+     * @return true if path (following symbolic links of its existing part) is inside daemon's working directory
+     */
+    private static boolean isInsideCwd(String path) {
+        try {
+            Path existing = PathUtil.CWD.resolve(path).normalize();
+            while (existing != null && !Files.exists(existing, LinkOption.NOFOLLOW_LINKS)) {
+                existing = existing.getParent();
+            }
+            return existing != null && existing.toRealPath().startsWith(PathUtil.CWD.toRealPath());
+        } catch (IOException | InvalidPathException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return new random token in hex form
+     */
+    private static String newToken() {
+        byte[] bytes = new byte[TOKEN_SIZE];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder ret = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            ret.append(String.format("%02x", b));
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Atomically writes port number and token to the port file so clients never see partial content.
+     * File is readable by owner only
+     */
+    private void writePortFile(int localPort, String token) throws IOException {
+        Path target = Paths.get(portFile).toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), "srclib-basic", ".port");
+        try {
+            Files.setPosixFilePermissions(tmp, EnumSet.of(PosixFilePermission.OWNER_READ,
+                    PosixFilePermission.OWNER_WRITE));
+        } catch (UnsupportedOperationException e) {
+            // not a POSIX file system, temporary file is created with default restrictive permissions
+        }
+        Files.write(tmp, (localPort + " " + token + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        target.toFile().deleteOnExit();
+    }
+
+    private static class Request {
+        List<String> Args;
+        String Dir;
+        JsonElement Input;
+        String Token;
+    }
+
+    private static class Response {
+        int ExitCode;
+        long Length;
+        String Error;
+    }
+}
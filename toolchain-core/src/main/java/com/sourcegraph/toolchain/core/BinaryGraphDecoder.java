@@ -0,0 +1,133 @@
+package com.sourcegraph.toolchain.core;
+
+import com.sourcegraph.toolchain.core.objects.Def;
+import com.sourcegraph.toolchain.core.objects.DefKey;
+import com.sourcegraph.toolchain.core.objects.Ref;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.sourcegraph.toolchain.core.BinaryGraphFormat.*;
+
+/**
+ * Decodes graph written in compact binary format (see {@link BinaryGraphFormat}) and passes definitions and
+ * references to the given encoder in the order they were written
+ */
+public class BinaryGraphDecoder {
+
+    private final InputStream in;
+
+    /**
+     * String table, id => string
+     */
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * @param in input stream to read from
+     */
+    public BinaryGraphDecoder(InputStream in) {
+        this.in = new BufferedInputStream(in, JSONUtil.BUFFER_SIZE);
+        strings.add(null);
+    }
+
+    /**
+     * Decodes stream
+     * @param target encoder to pass decoded definitions and references to
+     * @throws IOException
+     */
+    public void decode(GraphEncoder target) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        if (readFully(in, magic) != MAGIC.length || !Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary graph stream");
+        }
+        int version = in.read();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary graph version " + version);
+        }
+        byte[] buf = new byte[256];
+        int tag;
+        while ((tag = in.read()) >= 0) {
+            int length = readVarint(in, false);
+            if (buf.length < length) {
+                buf = new byte[Math.max(length, buf.length * 2)];
+            }
+            if (readFully(in, buf, length) != length) {
+                throw new EOFException();
+            }
+            switch (tag) {
+                case STRING:
+                    strings.add(new String(buf, 0, length, StandardCharsets.UTF_8));
+                    break;
+                case DEF:
+                    target.writeDef(readDef(new ByteArrayInputStream(buf, 0, length)));
+                    break;
+                case REF:
+                    target.writeRef(readRef(new ByteArrayInputStream(buf, 0, length)));
+                    break;
+                default:
+                    // unknown record, skipping
+            }
+        }
+    }
+
+    private Def readDef(InputStream record) throws IOException {
+        Def def = new Def();
+        def.file = string(record);
+        def.name = string(record);
+        def.kind = string(record);
+        def.defKey = new DefKey(null, string(record));
+        // tree path equals to path
+        string(record);
+        def.defStart = readVarint(record, false);
+        def.defEnd = def.defStart + readSignedVarint(record);
+        int flags = record.read();
+        def.exported = (flags & FLAG_EXPORTED) != 0;
+        def.local = (flags & FLAG_LOCAL) != 0;
+        def.test = (flags & FLAG_TEST) != 0;
+        int entries = readVarint(record, false);
+        for (int i = 0; i < entries; i++) {
+            def.defData.put(string(record), string(record));
+        }
+        return def;
+    }
+
+    private Ref readRef(InputStream record) throws IOException {
+        Ref ref = new Ref();
+        ref.defRepo = string(record);
+        ref.defUnitType = string(record);
+        ref.defUnit = string(record);
+        ref.defKey = new DefKey(null, string(record));
+        ref.file = string(record);
+        ref.start = readVarint(record, false);
+        ref.end = ref.start + readSignedVarint(record);
+        ref.def = (record.read() & FLAG_DEF) != 0;
+        return ref;
+    }
+
+    private String string(InputStream record) throws IOException {
+        int id = readVarint(record, false);
+        if (id >= strings.size()) {
+            throw new IOException("Unknown string id " + id);
+        }
+        return strings.get(id);
+    }
+
+    private static int readFully(InputStream in, byte[] buf) throws IOException {
+        return readFully(in, buf, buf.length);
+    }
+
+    private static int readFully(InputStream in, byte[] buf, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = in.read(buf, total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,165 @@
+package com.sourcegraph.toolchain.core;
+
+import com.sourcegraph.toolchain.core.objects.Def;
+import com.sourcegraph.toolchain.core.objects.Ref;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.sourcegraph.toolchain.core.BinaryGraphFormat.*;
+
+/**
+ * Encodes graph using compact binary format, see {@link BinaryGraphFormat}
+ */
+public class BinaryGraphEncoder implements GraphEncoder {
+
+    private final OutputStream out;
+
+    /**
+     * String table, string => id
+     */
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    private final FileRegistry files;
+
+    /**
+     * Registered file id => string id of its relative path, 0 if not written yet
+     */
+    private int[] fileIds = new int[256];
+
+    /**
+     * Payload of the record being written
+     */
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+    /**
+     * @param out output stream to write to
+     * @throws IOException
+     */
+    public BinaryGraphEncoder(OutputStream out) throws IOException {
+        this(out, new FileRegistry());
+    }
+
+    /**
+     * @param out output stream to write to
+     * @param files registry to take relative paths of files from
+     * @throws IOException
+     */
+    public BinaryGraphEncoder(OutputStream out, FileRegistry files) throws IOException {
+        this.files = files;
+        this.out = new BufferedOutputStream(out, JSONUtil.BUFFER_SIZE);
+        this.out.write(MAGIC);
+        this.out.write(VERSION);
+    }
+
+    @Override
+    public void writeDef(Def def) throws IOException {
+        int file = file(def.file);
+        int name = string(def.name);
+        int kind = string(def.kind);
+        int path = string(def.defKey.formatPath());
+        int treePath = string(def.defKey.formatTreePath());
+        int[] data = new int[def.defData == null ? 0 : def.defData.size() * 2];
+        if (data.length > 0) {
+            int i = 0;
+            for (Map.Entry<String, Object> entry : def.defData.entrySet()) {
+                data[i++] = string(entry.getKey());
+                data[i++] = string(entry.getValue() == null ? null : entry.getValue().toString());
+            }
+        }
+
+        writeVarint(record, file);
+        writeVarint(record, name);
+        writeVarint(record, kind);
+        writeVarint(record, path);
+        writeVarint(record, treePath);
+        writeVarint(record, def.defStart);
+        writeSignedVarint(record, def.defEnd - def.defStart);
+        record.write((def.exported ? FLAG_EXPORTED : 0) | (def.local ? FLAG_LOCAL : 0) | (def.test ? FLAG_TEST : 0));
+        writeVarint(record, data.length / 2);
+        for (int id : data) {
+            writeVarint(record, id);
+        }
+        flushRecord(DEF);
+    }
+
+    @Override
+    public void writeRef(Ref ref) throws IOException {
+        int defRepo = string(ref.defRepo);
+        int defUnitType = string(ref.defUnitType);
+        int defUnit = string(ref.defUnit);
+        int defPath = string(ref.defKey.formatPath());
+        int file = file(ref.file);
+
+        writeVarint(record, defRepo);
+        writeVarint(record, defUnitType);
+        writeVarint(record, defUnit);
+        writeVarint(record, defPath);
+        writeVarint(record, file);
+        writeVarint(record, ref.start);
+        writeSignedVarint(record, ref.end - ref.start);
+        record.write(ref.def ? FLAG_DEF : 0);
+        flushRecord(REF);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * @return string id, writes new string record if string was not seen before
+     */
+    private int string(String s) throws IOException {
+        if (s == null) {
+            return 0;
+        }
+        Integer id = strings.get(s);
+        if (id == null) {
+            id = strings.size() + 1;
+            strings.put(s, id);
+            record.write(s.getBytes(StandardCharsets.UTF_8));
+            flushRecord(STRING);
+        }
+        return id;
+    }
+
+    /**
+     * @return string id of file's relative path, writes new string record if path was not seen before
+     */
+    private int file(String path) throws IOException {
+        if (path == null) {
+            return 0;
+        }
+        FileRegistry.Entry entry = files.get(path);
+        int id = entry.getId();
+        if (id >= fileIds.length) {
+            fileIds = Arrays.copyOf(fileIds, Math.max(id + 1, fileIds.length * 2));
+        }
+        if (fileIds[id] == 0) {
+            fileIds[id] = string(entry.getRelativePath());
+        }
+        return fileIds[id];
+    }
+
+    /**
+     * Writes record's tag, length and payload
+     */
+    private void flushRecord(int tag) throws IOException {
+        out.write(tag);
+        writeVarint(out, record.size());
+        record.writeTo(out);
+        record.reset();
+    }
+}
@@ -0,0 +1,85 @@
+package com.sourcegraph.toolchain.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compact binary graph format.
+ * Stream starts with {@link #MAGIC} followed by format version byte and then by records.
+ * Each record is a tag byte followed by varint payload length and payload, thus readers may skip records they
+ * do not know. Records are:
+ * - STRING: UTF-8 bytes. Strings (files, paths, kinds, names, repos...) are written once and get sequential ids
+ * starting from 1, 0 stands for null
+ * - DEF: file, name, kind, path, tree path (string ids), start (varint), end - start (zigzag varint),
+ * flags (exported, local, test), number of data entries followed by key/value string id pairs
+ * - REF: def repo, def unit type, def unit, def path, file (string ids), start (varint), end - start (zigzag varint),
+ * flags (def)
+ */
+final class BinaryGraphFormat {
+
+    static final byte[] MAGIC = {'S', 'G', 'B', 'G'};
+
+    static final int VERSION = 1;
+
+    static final int STRING = 1;
+    static final int DEF = 2;
+    static final int REF = 3;
+
+    static final int FLAG_EXPORTED = 1;
+    static final int FLAG_LOCAL = 2;
+    static final int FLAG_TEST = 4;
+    static final int FLAG_DEF = 1;
+
+    private BinaryGraphFormat() {
+    }
+
+    /**
+     * Writes unsigned varint
+     */
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Writes signed varint (zigzag encoding)
+     */
+    static void writeSignedVarint(OutputStream out, int value) throws IOException {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Reads unsigned varint
+     * @return -1 if end of stream reached before the first byte
+     */
+    static int readVarint(InputStream in, boolean eofAllowed) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (eofAllowed && shift == 0) {
+                    return -1;
+                }
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Reads signed varint (zigzag encoding)
+     */
+    static int readSignedVarint(InputStream in) throws IOException {
+        int value = readVarint(in, false);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
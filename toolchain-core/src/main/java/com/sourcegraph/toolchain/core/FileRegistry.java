@@ -0,0 +1,123 @@
+package com.sourcegraph.toolchain.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of source files seen during a single run. Assigns each file an identifier and computes its normalized
+ * path relative to current working directory ({@link PathUtil#relativizeCwd(String)}) once, thus emitting and
+ * serializing definitions and references does not repeat path operations.
+ * Files are registered by paths they were given with and by their relative paths, so relative paths stored in
+ * definitions and references resolve to the same entry.
+ * Thread-safe
+ */
+public class FileRegistry {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final List<Entry> list = new ArrayList<>();
+
+    /**
+     * @param path file path, absolute or relative to current working directory
+     * @return registry entry of a given file
+     */
+    public Entry get(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            entry = register(path);
+        }
+        return entry;
+    }
+
+    /**
+     * @param file file to get entry of
+     * @return registry entry of a given file
+     */
+    public Entry get(File file) {
+        return get(file.getPath());
+    }
+
+    /**
+     * @param path file path, absolute or relative to current working directory
+     * @return normalized path relative to current working directory, see {@link PathUtil#relativizeCwd(String)}
+     */
+    public String relativize(String path) {
+        return get(path).getRelativePath();
+    }
+
+    /**
+     * @param file file to get path of
+     * @return normalized path relative to current working directory, see {@link PathUtil#relativizeCwd(String)}
+     */
+    public String relativize(File file) {
+        return get(file.getPath()).getRelativePath();
+    }
+
+    /**
+     * @param id file identifier
+     * @return registry entry with a given identifier
+     */
+    public synchronized Entry get(int id) {
+        return list.get(id);
+    }
+
+    /**
+     * @return number of registered files
+     */
+    public synchronized int size() {
+        return list.size();
+    }
+
+    private synchronized Entry register(String path) {
+        Entry entry = entries.get(path);
+        if (entry != null) {
+            return entry;
+        }
+        String relativePath = PathUtil.relativizeCwd(path);
+        entry = entries.get(relativePath);
+        if (entry == null) {
+            entry = new Entry(list.size(), relativePath);
+            list.add(entry);
+            entries.put(relativePath, entry);
+        }
+        entries.put(path, entry);
+        return entry;
+    }
+
+    /**
+     * Registered file
+     */
+    public static class Entry {
+
+        private final int id;
+
+        private final String relativePath;
+
+        Entry(int id, String relativePath) {
+            this.id = id;
+            this.relativePath = relativePath;
+        }
+
+        /**
+         * @return file identifier, identifiers are sequential starting from 0
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return normalized path relative to current working directory
+         */
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        @Override
+        public String toString() {
+            return relativePath;
+        }
+    }
+}
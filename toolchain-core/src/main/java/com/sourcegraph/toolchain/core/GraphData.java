@@ -1,7 +1,9 @@
 package com.sourcegraph.toolchain.core;
 
 import com.sourcegraph.toolchain.core.objects.Def;
+import com.sourcegraph.toolchain.core.objects.DefKey;
 import com.sourcegraph.toolchain.core.objects.Ref;
+import com.sourcegraph.toolchain.core.objects.SymbolTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,22 +13,44 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 
 /**
- * Implementation of graph writer that collects references and definitions and then writes them as JSON
+ * Implementation of graph writer that collects references and definitions and then writes them as JSON.
+ * References are kept in compact primitive form (see {@link RefStore}), collection returned by getRefs() makes new
+ * reference objects while being iterated.
+ * Thread-safe
  */
 public class GraphData implements GraphWriter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GraphData.class);
 
     private final Map<Def, Def> defs = new LinkedHashMap<>();
-    private final Collection<Ref> refs = new LinkedHashSet<>();
+    private final RefStore refs;
+
+    /**
+     * Distinct keys of reference candidates
+     */
+    private final Collection<DefKey> candidateKeys = new LinkedHashSet<>();
+
+    public GraphData() {
+        this(new SymbolTable());
+    }
+
+    /**
+     * @param symbols symbol table to identify strings of references with, preferably the one language interns
+     * emitted references in
+     */
+    public GraphData(SymbolTable symbols) {
+        this.refs = new RefStore(symbols);
+    }
 
     @Override
-    public void writeRef(Ref r) {
-        refs.add(r);
+    public synchronized void writeRef(Ref r) {
+        if (refs.add(r) && r.candidate) {
+            candidateKeys.add(r.defKey);
+        }
     }
 
     @Override
-    public void writeDef(Def s) {
+    public synchronized void writeDef(Def s) {
         Def prev = defs.put(s, s);
         if (prev != null) {
             LOGGER.warn("{} already defined in {} at {}:{}, redefinition attempt in {} at {}:{}",
@@ -44,11 +68,18 @@ public class GraphData implements GraphWriter {
     public void flush() {
     }
 
-    public Collection<Def> getDefs() {
+    public synchronized Collection<Def> getDefs() {
         return defs.keySet();
     }
 
-    public Collection<Ref> getRefs() {
+    public synchronized Collection<Ref> getRefs() {
         return refs;
     }
+
+    /**
+     * @return distinct definition keys of reference candidates
+     */
+    public synchronized Collection<DefKey> getCandidateKeys() {
+        return candidateKeys;
+    }
 }
@@ -0,0 +1,36 @@
+package com.sourcegraph.toolchain.core;
+
+import com.sourcegraph.toolchain.core.objects.Def;
+import com.sourcegraph.toolchain.core.objects.Ref;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Encodes graph (definitions and references) to some output format.
+ * All definitions are expected to be written before references
+ */
+public interface GraphEncoder extends Closeable, Flushable {
+
+    /**
+     * Encodes definition
+     * @param def definition to encode
+     * @throws IOException
+     */
+    void writeDef(Def def) throws IOException;
+
+    /**
+     * Encodes reference
+     * @param ref reference to encode
+     * @throws IOException
+     */
+    void writeRef(Ref ref) throws IOException;
+
+    /**
+     * Completes output and flushes underlying stream
+     * @throws IOException
+     */
+    @Override
+    void close() throws IOException;
+}
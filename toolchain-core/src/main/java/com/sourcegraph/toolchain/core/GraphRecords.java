@@ -0,0 +1,182 @@
+package com.sourcegraph.toolchain.core;
+
+import com.sourcegraph.toolchain.core.objects.Def;
+import com.sourcegraph.toolchain.core.objects.DefKey;
+import com.sourcegraph.toolchain.core.objects.Ref;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Binary serialization of definitions and references for temporary and cache files.
+ * Unlike {@link BinaryGraphFormat}, records keep everything graph writers need: origins of definition keys,
+ * reference candidate flags, and typed definition data values
+ */
+public final class GraphRecords {
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INTEGER = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int BOOLEAN = 5;
+
+    private GraphRecords() {
+    }
+
+    public static void writeDef(Def def, DataOutputStream out) throws IOException {
+        writeKey(def.defKey, out);
+        writeString(def.kind, out);
+        writeString(def.name, out);
+        writeString(def.file, out);
+        out.writeInt(def.defStart);
+        out.writeInt(def.defEnd);
+        out.writeBoolean(def.exported);
+        out.writeBoolean(def.local);
+        out.writeBoolean(def.test);
+        out.writeBoolean(def.defData != null);
+        if (def.defData != null) {
+            out.writeInt(def.defData.size());
+            for (Map.Entry<String, Object> data : def.defData.entrySet()) {
+                writeString(data.getKey(), out);
+                writeValue(data.getValue(), out);
+            }
+        }
+    }
+
+    public static Def readDef(DataInputStream in) throws IOException {
+        Def def = new Def();
+        def.defKey = readKey(in);
+        def.kind = readString(in);
+        def.name = readString(in);
+        def.file = readString(in);
+        def.defStart = in.readInt();
+        def.defEnd = in.readInt();
+        def.exported = in.readBoolean();
+        def.local = in.readBoolean();
+        def.test = in.readBoolean();
+        if (in.readBoolean()) {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                def.defData.put(readString(in), readValue(in));
+            }
+        } else {
+            def.defData = null;
+        }
+        return def;
+    }
+
+    public static void writeRef(Ref ref, DataOutputStream out) throws IOException {
+        writeKey(ref.defKey, out);
+        writeString(ref.defRepo, out);
+        writeString(ref.defUnitType, out);
+        writeString(ref.defUnit, out);
+        writeString(ref.file, out);
+        out.writeInt(ref.start);
+        out.writeInt(ref.end);
+        out.writeBoolean(ref.candidate);
+        out.writeBoolean(ref.def);
+    }
+
+    public static Ref readRef(DataInputStream in) throws IOException {
+        Ref ref = new Ref();
+        ref.defKey = readKey(in);
+        ref.defRepo = readString(in);
+        ref.defUnitType = readString(in);
+        ref.defUnit = readString(in);
+        ref.file = readString(in);
+        ref.start = in.readInt();
+        ref.end = in.readInt();
+        ref.candidate = in.readBoolean();
+        ref.def = in.readBoolean();
+        return ref;
+    }
+
+    public static void writeKey(DefKey key, DataOutputStream out) throws IOException {
+        out.writeBoolean(key != null);
+        if (key != null) {
+            writeString(key.getOrigin() == null ? null : key.getOrigin().toString(), out);
+            writeString(key.getPath(), out);
+        }
+    }
+
+    public static DefKey readKey(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String origin = readString(in);
+        return new DefKey(origin == null ? null : URI.create(origin), readString(in));
+    }
+
+    /**
+     * Writes definition data value keeping its type (null, string, integer, long, double, or boolean,
+     * other objects are written as strings)
+     */
+    public static void writeValue(Object value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else {
+            out.writeByte(STRING);
+            writeString(value.toString(), out);
+        }
+    }
+
+    public static Object readValue(DataInputStream in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case STRING:
+                return readString(in);
+            default:
+                throw new IOException("Malformed value record");
+        }
+    }
+
+    /**
+     * Writes nullable string as length-prefixed UTF-8 bytes, not limited in length
+     */
+    public static void writeString(String s, DataOutputStream out) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -15,7 +15,7 @@ public interface GraphWriter {
     void writeRef(Ref ref);
 
     /**
-     * Writes definition
+     * Writes definition. Definition is expected to be complete, writer may serialize it immediately
      * @param def definition to write
      */
     void writeDef(Def def);
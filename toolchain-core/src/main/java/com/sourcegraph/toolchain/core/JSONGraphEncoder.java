@@ -0,0 +1,89 @@
+package com.sourcegraph.toolchain.core;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.sourcegraph.toolchain.core.objects.Def;
+import com.sourcegraph.toolchain.core.objects.Ref;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes graph as JSON object {"Defs": [...], "Refs": [...]}
+ */
+public class JSONGraphEncoder implements GraphEncoder {
+
+    private final Gson gson;
+
+    private final JsonWriter out;
+
+    private boolean refs;
+
+    /**
+     * @param out output stream to write UTF-8 JSON to
+     * @param compact produce compact JSON (no indentation and line breaks)
+     * @throws IOException
+     */
+    public JSONGraphEncoder(OutputStream out, boolean compact) throws IOException {
+        this(out, compact, new FileRegistry());
+    }
+
+    /**
+     * @param out output stream to write UTF-8 JSON to
+     * @param compact produce compact JSON (no indentation and line breaks)
+     * @param files registry to take relative paths of files from
+     * @throws IOException
+     */
+    public JSONGraphEncoder(OutputStream out, boolean compact, FileRegistry files) throws IOException {
+        this.gson = JSONUtil.gson(compact, files);
+        this.out = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+                JSONUtil.BUFFER_SIZE));
+        if (!compact) {
+            this.out.setIndent("  ");
+        }
+        this.out.setHtmlSafe(false);
+        this.out.beginObject();
+        this.out.name("Defs");
+        this.out.beginArray();
+    }
+
+    @Override
+    public void writeDef(Def def) throws IOException {
+        if (refs) {
+            throw new IllegalStateException("Definitions should be written before references");
+        }
+        gson.toJson(def, Def.class, out);
+    }
+
+    @Override
+    public void writeRef(Ref ref) throws IOException {
+        if (!refs) {
+            refs = true;
+            out.endArray();
+            out.name("Refs");
+            out.beginArray();
+        }
+        gson.toJson(ref, Ref.class, out);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!refs) {
+            refs = true;
+            out.endArray();
+            out.name("Refs");
+            out.beginArray();
+        }
+        out.endArray();
+        out.endObject();
+        out.flush();
+    }
+}
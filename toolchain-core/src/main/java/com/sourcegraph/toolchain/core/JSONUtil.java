@@ -6,8 +6,9 @@ import com.sourcegraph.toolchain.core.objects.Def;
 import com.sourcegraph.toolchain.core.objects.Ref;
 import org.apache.commons.io.IOUtils;
 
+import java.io.BufferedWriter;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 
@@ -16,26 +17,72 @@ import java.nio.charset.StandardCharsets;
  */
 public class JSONUtil {
 
+    /**
+     * Output buffer size
+     */
+    static final int BUFFER_SIZE = 1 << 16;
+
     /**
      * Writes object as UTF-8 JSON
      * @param o object to write
      */
     public static void writeJSON(Object o) {
-        Writer w = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true);
-        gson().toJson(o, w);
+        writeJSON(o, System.out);
+    }
+
+    /**
+     * Writes object as UTF-8 JSON
+     * @param o object to write
+     * @param out stream to write to, closed when done
+     */
+    public static void writeJSON(Object o, OutputStream out) {
+        writeJSON(o, false, out);
+    }
+
+    /**
+     * Writes object as UTF-8 JSON
+     * @param o object to write
+     * @param compact produce compact JSON (no indentation and line breaks)
+     */
+    public static void writeJSON(Object o, boolean compact) {
+        writeJSON(o, compact, System.out);
+    }
+
+    /**
+     * Writes object as UTF-8 JSON
+     * @param o object to write
+     * @param compact produce compact JSON (no indentation and line breaks)
+     * @param out stream to write to, closed when done
+     */
+    public static void writeJSON(Object o, boolean compact, OutputStream out) {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        gson(compact).toJson(o, w);
         IOUtils.closeQuietly(w);
     }
 
     /**
      * Constructs new writer implementation
+     * @param compact produce compact JSON (no indentation and line breaks)
+     * @return configured writer implementation
+     */
+    static Gson gson(boolean compact) {
+        return gson(compact, new FileRegistry());
+    }
+
+    /**
+     * Constructs new writer implementation
+     * @param compact produce compact JSON (no indentation and line breaks)
+     * @param files registry to take relative paths of definitions' and references' files from
      * @return configured writer implementation
      */
-    private static Gson gson() {
+    static Gson gson(boolean compact, FileRegistry files) {
         GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.setPrettyPrinting();
+        if (!compact) {
+            gsonBuilder.setPrettyPrinting();
+        }
         gsonBuilder.disableHtmlEscaping();
-        gsonBuilder.registerTypeAdapter(Def.class, new Def.JSONSerializer());
-        gsonBuilder.registerTypeAdapter(Ref.class, new Ref.JSONSerializer());
+        gsonBuilder.registerTypeAdapterFactory(new Def.JSONSerializer(files));
+        gsonBuilder.registerTypeAdapterFactory(new Ref.JSONSerializer(files));
         return gsonBuilder.create();
     }
 
@@ -0,0 +1,236 @@
+package com.sourcegraph.toolchain.core;
+
+import com.sourcegraph.toolchain.core.objects.DefKey;
+import com.sourcegraph.toolchain.core.objects.Ref;
+import com.sourcegraph.toolchain.core.objects.SymbolTable;
+
+import java.util.*;
+
+/**
+ * Insertion-ordered set of references kept in parallel primitive arrays instead of objects.
+ * Strings and def keys are stored as symbol table identifiers, duplicates are detected by open addressing hash table
+ * of primitive fields (the same fields {@link Ref#equals(Object)} compares). References are materialized as new
+ * objects while being iterated. Not thread-safe
+ */
+class RefStore extends AbstractCollection<Ref> {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private static final float LOAD_FACTOR = 0.7f;
+
+    /**
+     * No value (null def key, file, or definition target)
+     */
+    private static final int NONE = -1;
+
+    private final SymbolTable symbols;
+
+    /**
+     * Def keys that can't be canonical (refer to other origins), identified by negative numbers starting from -2
+     */
+    private final List<DefKey> foreignKeys = new ArrayList<>();
+    private final Map<DefKey, Integer> foreignKeyIds = new HashMap<>();
+
+    /**
+     * Distinct definition targets (repository, unit type, unit) of references
+     */
+    private final List<String[]> targets = new ArrayList<>();
+    private final Map<List<String>, Integer> targetIds = new HashMap<>();
+
+    private int[] defKeys = new int[INITIAL_CAPACITY];
+    private int[] files = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+
+    /**
+     * Definition target identifier shifted left by one, lowest bit is "def" flag
+     */
+    private int[] targetsAndDefs = new int[INITIAL_CAPACITY];
+
+    /**
+     * Not a part of reference identity, thus kept aside
+     */
+    private final BitSet candidates = new BitSet();
+
+    private int size;
+
+    /**
+     * Hash table of reference indexes plus one, 0 marks empty slot
+     */
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * @param symbols symbol table to identify strings and def keys with
+     */
+    RefStore(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Adds reference unless there is an equal one already
+     * @param ref reference to add
+     * @return true if reference was added
+     */
+    @Override
+    public boolean add(Ref ref) {
+        int defKey = keyId(ref.defKey);
+        int file = symbols.id(ref.file);
+        int targetAndDef = (targetId(ref) << 1) | (ref.def ? 1 : 0);
+
+        int mask = slots.length - 1;
+        int slot = hash(defKey, file, ref.start, ref.end, targetAndDef) & mask;
+        for (int index = slots[slot]; index != 0; index = slots[slot]) {
+            int i = index - 1;
+            if (defKeys[i] == defKey &&
+                    files[i] == file &&
+                    starts[i] == ref.start &&
+                    ends[i] == ref.end &&
+                    targetsAndDefs[i] == targetAndDef) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == defKeys.length) {
+            int capacity = size * 2;
+            defKeys = Arrays.copyOf(defKeys, capacity);
+            files = Arrays.copyOf(files, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            targetsAndDefs = Arrays.copyOf(targetsAndDefs, capacity);
+        }
+        defKeys[size] = defKey;
+        files[size] = file;
+        starts[size] = ref.start;
+        ends[size] = ref.end;
+        targetsAndDefs[size] = targetAndDef;
+        if (ref.candidate) {
+            candidates.set(size);
+        }
+        slots[slot] = ++size;
+        if (size > slots.length * LOAD_FACTOR) {
+            rehash();
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Iterates over references that were added before iterator was made, in order of addition.
+     * Each call to next() makes new reference object
+     */
+    @Override
+    public Iterator<Ref> iterator() {
+        int count = size;
+        return new Iterator<Ref>() {
+
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public Ref next() {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * @return new reference object made of fields of i-th reference
+     */
+    private Ref get(int i) {
+        Ref ref = new Ref();
+        int defKey = defKeys[i];
+        if (defKey >= 0) {
+            ref.defKey = symbols.key(defKey);
+        } else if (defKey != NONE) {
+            ref.defKey = foreignKeys.get(-defKey - 2);
+        }
+        if (files[i] != NONE) {
+            ref.file = symbols.get(files[i]);
+        }
+        ref.start = starts[i];
+        ref.end = ends[i];
+        ref.def = (targetsAndDefs[i] & 1) != 0;
+        int target = targetsAndDefs[i] >> 1;
+        if (target != NONE) {
+            String[] values = targets.get(target);
+            ref.defRepo = values[0];
+            ref.defUnitType = values[1];
+            ref.defUnit = values[2];
+        }
+        ref.candidate = candidates.get(i);
+        return ref;
+    }
+
+    /**
+     * @return identifier of def key: path identifier of canonical keys, negative number of keys that refer to
+     * other origins, and NONE for null
+     */
+    private int keyId(DefKey key) {
+        if (key == null) {
+            return NONE;
+        }
+        if (key.getOrigin() == null && key.getPath() != null) {
+            return symbols.id(key.getPath());
+        }
+        Integer id = foreignKeyIds.get(key);
+        if (id == null) {
+            id = -foreignKeys.size() - 2;
+            foreignKeys.add(key);
+            foreignKeyIds.put(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return identifier of reference's definition target or NONE if it's not set
+     */
+    private int targetId(Ref ref) {
+        if (ref.defRepo == null && ref.defUnitType == null && ref.defUnit == null) {
+            return NONE;
+        }
+        List<String> target = Arrays.asList(ref.defRepo, ref.defUnitType, ref.defUnit);
+        Integer id = targetIds.get(target);
+        if (id == null) {
+            id = targets.size();
+            targets.add(new String[]{ref.defRepo, ref.defUnitType, ref.defUnit});
+            targetIds.put(target, id);
+        }
+        return id;
+    }
+
+    private void rehash() {
+        int[] table = new int[slots.length * 2];
+        int mask = table.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(defKeys[i], files[i], starts[i], ends[i], targetsAndDefs[i]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+        slots = table;
+    }
+
+    private static int hash(int defKey, int file, int start, int end, int targetAndDef) {
+        int h = defKey;
+        h = 31 * h + file;
+        h = 31 * h + start;
+        h = 31 * h + end;
+        h = 31 * h + targetAndDef;
+        // spreading bits, offsets and identifiers are small numbers
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,478 @@
+package com.sourcegraph.toolchain.core;
+
+import com.sourcegraph.toolchain.core.objects.Def;
+import com.sourcegraph.toolchain.core.objects.DefKey;
+import com.sourcegraph.toolchain.core.objects.Ref;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Implementation of graph writer that keeps bounded number of definitions and references in memory.
+ * When buffer is full, its content is sorted and spilled to temporary file (run). On close runs are merged
+ * (external merge sort), duplicate definitions and references are dropped, reference candidates are resolved,
+ * and the result is passed to encoder.
+ * Deduplication rules are the same {@link GraphData} has: the first emitted definition or reference wins.
+ * Unlike GraphData, definitions are written ordered by their keys and references are written ordered by their
+ * fields (definition key first) rather than in order they were emitted.
+ * Thread-safe
+ */
+public class SpillingGraphWriter implements GraphWriter, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillingGraphWriter.class);
+
+    /**
+     * Maximum number of runs merged at once, more runs are merged in several passes
+     */
+    private static final int MAX_FAN_IN = 64;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Comparator<String> STRINGS = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private static final Comparator<DefKey> KEYS = Comparator.nullsFirst(
+            Comparator.comparing((DefKey key) -> key.getOrigin() == null ? null : key.getOrigin().toString(), STRINGS).
+                    thenComparing(DefKey::getPath, STRINGS));
+
+    private static final Comparator<Def> DEFS = Comparator.comparing((Def def) -> def.defKey, KEYS);
+
+    private static final Comparator<Ref> REFS = Comparator.comparing((Ref ref) -> ref.defKey, KEYS).
+            thenComparing(ref -> ref.defRepo, STRINGS).
+            thenComparing(ref -> ref.defUnitType, STRINGS).
+            thenComparing(ref -> ref.defUnit, STRINGS).
+            thenComparing(ref -> ref.file, STRINGS).
+            thenComparingInt(ref -> ref.start).
+            thenComparingInt(ref -> ref.end).
+            thenComparing(ref -> ref.def);
+
+    private final GraphEncoder out;
+
+    private final Function<Collection<DefKey>, Map<DefKey, DefKey>> resolver;
+
+    private final int bufferSize;
+
+    private final Path directory;
+
+    private final Spill<Def> defs = new Spill<>("defs", DEFS, GraphRecords::writeDef, GraphRecords::readDef);
+
+    private final Spill<Ref> refs = new Spill<>("refs", REFS, GraphRecords::writeRef, GraphRecords::readRef);
+
+    /**
+     * Distinct keys of reference candidates, resolved in bulk before references are merged
+     */
+    private final Collection<DefKey> candidateKeys = new HashSet<>();
+
+    /**
+     * Emission order, used to keep the first of equal records
+     */
+    private long seq;
+
+    private boolean closed;
+
+    /**
+     * @param out encoder to pass definitions and references to
+     * @param resolver resolves keys of reference candidates when all definitions and references were emitted
+     * (see {@link com.sourcegraph.toolchain.language.Language#resolveAll(Collection)})
+     * @param bufferSize maximum number of definitions and references to keep in memory
+     * @throws IOException
+     */
+    public SpillingGraphWriter(GraphEncoder out,
+                               Function<Collection<DefKey>, Map<DefKey, DefKey>> resolver,
+                               int bufferSize) throws IOException {
+        this.out = out;
+        this.resolver = resolver;
+        this.bufferSize = Math.max(bufferSize, 1);
+        this.directory = Files.createTempDirectory("srclib-basic-spill");
+    }
+
+    @Override
+    public synchronized void writeRef(Ref ref) {
+        refs.add(new Sequenced<>(seq++, ref));
+        if (ref.candidate) {
+            candidateKeys.add(ref.defKey);
+        }
+        spillIfFull();
+    }
+
+    @Override
+    public synchronized void writeDef(Def def) {
+        defs.add(new Sequenced<>(seq++, def));
+        spillIfFull();
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Merges runs, resolves reference candidates, writes deduplicated definitions and references,
+     * and closes encoder. Writer does not accept data after it was closed
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (defs.runs.size() + refs.runs.size() > 0) {
+                LOGGER.info("Merging {} runs of definitions and {} runs of references",
+                        defs.runs.size() + (defs.buffer.isEmpty() ? 0 : 1),
+                        refs.runs.size() + (refs.buffer.isEmpty() ? 0 : 1));
+            }
+            writeDefs();
+            writeRefs();
+            out.close();
+        } finally {
+            FileUtils.deleteQuietly(directory.toFile());
+        }
+    }
+
+    private void spillIfFull() {
+        if (defs.buffer.size() + refs.buffer.size() < bufferSize) {
+            return;
+        }
+        try {
+            defs.spill();
+            refs.spill();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeDefs() throws IOException {
+        try (Cursor<Def> cursor = defs.merge()) {
+            Def prev = null;
+            while (cursor.next()) {
+                Def def = cursor.current().value;
+                if (prev != null && DEFS.compare(prev, def) == 0) {
+                    LOGGER.warn("{} already defined in {} at {}:{}, redefinition attempt in {} at {}:{}",
+                            prev.defKey.getPath(),
+                            prev.file,
+                            prev.defStart,
+                            prev.defEnd,
+                            def.file,
+                            def.defStart,
+                            def.defEnd);
+                    continue;
+                }
+                prev = def;
+                out.writeDef(def);
+            }
+        }
+    }
+
+    private void writeRefs() throws IOException {
+        Map<DefKey, DefKey> resolutions = resolver.apply(candidateKeys);
+        try (Cursor<Ref> cursor = refs.merge()) {
+            Ref prev = null;
+            while (cursor.next()) {
+                Ref ref = cursor.current().value;
+                if (prev != null && REFS.compare(prev, ref) == 0) {
+                    continue;
+                }
+                prev = ref;
+                if (ref.candidate) {
+                    DefKey adjusted = resolutions.get(ref.defKey);
+                    if (adjusted == null) {
+                        continue;
+                    }
+                    // copy, previous reference is compared by its original key
+                    Ref resolved = copy(ref);
+                    resolved.defKey = adjusted;
+                    ref = resolved;
+                }
+                out.writeRef(ref);
+            }
+        }
+    }
+
+    private static Ref copy(Ref ref) {
+        Ref copy = new Ref();
+        copy.defKey = ref.defKey;
+        copy.defRepo = ref.defRepo;
+        copy.defUnitType = ref.defUnitType;
+        copy.defUnit = ref.defUnit;
+        copy.file = ref.file;
+        copy.start = ref.start;
+        copy.end = ref.end;
+        copy.def = ref.def;
+        copy.candidate = ref.candidate;
+        return copy;
+    }
+
+    @FunctionalInterface
+    private interface Writer<T> {
+        void write(T value, DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * Record and its emission order
+     */
+    private static class Sequenced<T> {
+
+        final long seq;
+        final T value;
+
+        Sequenced(long seq, T value) {
+            this.seq = seq;
+            this.value = value;
+        }
+    }
+
+    /**
+     * In-memory buffer and sorted runs of records of the same type
+     */
+    private class Spill<T> {
+
+        private final String name;
+
+        /**
+         * Orders records by their fields and then by emission order, thus the first emitted record goes
+         * first among equal ones
+         */
+        private final Comparator<Sequenced<T>> order;
+
+        private final Writer<T> writer;
+
+        private final Reader<T> reader;
+
+        private final List<Sequenced<T>> buffer = new ArrayList<>();
+
+        private final Deque<Path> runs = new ArrayDeque<>();
+
+        Spill(String name, Comparator<T> comparator, Writer<T> writer, Reader<T> reader) {
+            this.name = name;
+            this.order = Comparator.comparing((Sequenced<T> record) -> record.value, comparator).
+                    thenComparingLong(record -> record.seq);
+            this.writer = writer;
+            this.reader = reader;
+        }
+
+        void add(Sequenced<T> record) {
+            buffer.add(record);
+        }
+
+        /**
+         * Sorts buffered records and writes them to the new run
+         */
+        void spill() throws IOException {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            buffer.sort(order);
+            runs.add(write(new ListCursor<>(buffer)));
+            LOGGER.debug("Spilled {} {} to run #{}", buffer.size(), name, runs.size());
+            buffer.clear();
+        }
+
+        /**
+         * @return cursor over all records (buffered and spilled) in order, records of the intermediate runs
+         * are merged while there are more of them than can be merged at once
+         */
+        Cursor<T> merge() throws IOException {
+            if (runs.isEmpty()) {
+                buffer.sort(order);
+                return new ListCursor<>(buffer);
+            }
+            spill();
+            while (runs.size() > MAX_FAN_IN) {
+                Path merged;
+                try (Cursor<T> cursor = open(MAX_FAN_IN)) {
+                    merged = write(cursor);
+                }
+                runs.add(merged);
+            }
+            return open(runs.size());
+        }
+
+        /**
+         * @return cursor that merges the first given number of runs, removing them from the list
+         */
+        private Cursor<T> open(int count) throws IOException {
+            Collection<Cursor<T>> cursors = new ArrayList<>(count);
+            try {
+                for (int i = 0; i < count; i++) {
+                    cursors.add(new RunCursor<>(runs.poll(), reader));
+                }
+            } catch (IOException e) {
+                for (Cursor<T> cursor : cursors) {
+                    cursor.close();
+                }
+                throw e;
+            }
+            return new MergeCursor<>(cursors, order);
+        }
+
+        /**
+         * Writes records to the new run file
+         * @return run file
+         */
+        private Path write(Cursor<T> cursor) throws IOException {
+            Path run = Files.createTempFile(directory, name, ".run");
+            try (DataOutputStream stream = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE))) {
+                while (cursor.next()) {
+                    Sequenced<T> record = cursor.current();
+                    stream.writeBoolean(true);
+                    stream.writeLong(record.seq);
+                    writer.write(record.value, stream);
+                }
+                stream.writeBoolean(false);
+            }
+            return run;
+        }
+    }
+
+    /**
+     * Sorted sequence of records
+     */
+    private interface Cursor<T> extends Closeable {
+
+        /**
+         * Moves to the next record
+         * @return false if there are no more records
+         */
+        boolean next() throws IOException;
+
+        /**
+         * @return current record
+         */
+        Sequenced<T> current();
+    }
+
+    private static class ListCursor<T> implements Cursor<T> {
+
+        private final Iterator<Sequenced<T>> iterator;
+
+        private Sequenced<T> current;
+
+        ListCursor(List<Sequenced<T>> records) {
+            this.iterator = records.iterator();
+        }
+
+        @Override
+        public boolean next() {
+            current = iterator.hasNext() ? iterator.next() : null;
+            return current != null;
+        }
+
+        @Override
+        public Sequenced<T> current() {
+            return current;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class RunCursor<T> implements Cursor<T> {
+
+        private final Path run;
+
+        private final DataInputStream in;
+
+        private final Reader<T> reader;
+
+        private Sequenced<T> current;
+
+        RunCursor(Path run, Reader<T> reader) throws IOException {
+            this.run = run;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            current = in.readBoolean() ? new Sequenced<>(in.readLong(), reader.read(in)) : null;
+            return current != null;
+        }
+
+        @Override
+        public Sequenced<T> current() {
+            return current;
+        }
+
+        /**
+         * Closes and removes run file
+         */
+        @Override
+        public void close() throws IOException {
+            in.close();
+            Files.deleteIfExists(run);
+        }
+    }
+
+    /**
+     * Merges sorted cursors
+     */
+    private static class MergeCursor<T> implements Cursor<T> {
+
+        private final Collection<Cursor<T>> cursors;
+
+        private final PriorityQueue<Cursor<T>> queue;
+
+        /**
+         * Cursor current record was taken from, it's advanced on the next move
+         */
+        private Cursor<T> last;
+
+        MergeCursor(Collection<Cursor<T>> cursors, Comparator<Sequenced<T>> order) throws IOException {
+            this.cursors = cursors;
+            this.queue = new PriorityQueue<>(Math.max(cursors.size(), 1),
+                    Comparator.comparing(Cursor::current, order));
+            for (Cursor<T> cursor : cursors) {
+                if (cursor.next()) {
+                    queue.add(cursor);
+                }
+            }
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            if (last != null && last.next()) {
+                queue.add(last);
+            }
+            last = queue.poll();
+            return last != null;
+        }
+
+        @Override
+        public Sequenced<T> current() {
+            return last == null ? null : last.current();
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException error = null;
+            for (Cursor<T> cursor : cursors) {
+                try {
+                    cursor.close();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+}
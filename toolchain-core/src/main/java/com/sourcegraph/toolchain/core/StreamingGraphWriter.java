@@ -0,0 +1,124 @@
+package com.sourcegraph.toolchain.core;
+
+import com.sourcegraph.toolchain.core.objects.Def;
+import com.sourcegraph.toolchain.core.objects.DefKey;
+import com.sourcegraph.toolchain.core.objects.Ref;
+import com.sourcegraph.toolchain.core.objects.SymbolTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Implementation of graph writer that passes definitions to encoder as soon as they are emitted.
+ * References are kept in {@link RefStore} (the same compact set {@link GraphData} uses) and written when all
+ * definitions are written, reference candidates are resolved at that moment.
+ * Memory usage grows with the number of distinct definition keys and references, not with definitions themselves:
+ * - duplicate definitions are detected by keeping their keys, which are already interned in language's symbol table
+ * - duplicate references are detected over the whole unit by exact key, as {@link GraphData} does, references are
+ * stored as symbol table identifiers
+ * Thread-safe
+ */
+public class StreamingGraphWriter implements GraphWriter, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingGraphWriter.class);
+
+    private final GraphEncoder out;
+
+    private final Function<Collection<DefKey>, Map<DefKey, DefKey>> resolver;
+
+    private final Set<DefKey> defs = new HashSet<>();
+
+    private final RefStore refs;
+
+    /**
+     * Distinct keys of reference candidates
+     */
+    private final Collection<DefKey> candidateKeys = new LinkedHashSet<>();
+
+    private boolean closed;
+
+    /**
+     * @param out encoder to pass definitions and references to
+     * @param symbols symbol table to identify strings of references with, preferably the one language interns
+     * emitted references in
+     * @param resolver resolves keys of reference candidates when all definitions and references were emitted
+     * (see {@link com.sourcegraph.toolchain.language.Language#resolveAll(Collection)})
+     */
+    public StreamingGraphWriter(GraphEncoder out,
+                                SymbolTable symbols,
+                                Function<Collection<DefKey>, Map<DefKey, DefKey>> resolver) {
+        this.out = out;
+        this.refs = new RefStore(symbols);
+        this.resolver = resolver;
+    }
+
+    @Override
+    public synchronized void writeRef(Ref ref) {
+        if (refs.add(ref) && ref.candidate) {
+            candidateKeys.add(ref.defKey);
+        }
+    }
+
+    @Override
+    public synchronized void writeDef(Def def) {
+        if (!defs.add(def.defKey)) {
+            LOGGER.warn("{} already defined, redefinition attempt in {} at {}:{}",
+                    def.defKey.getPath(),
+                    def.file,
+                    def.defStart,
+                    def.defEnd);
+            return;
+        }
+        try {
+            out.writeDef(def);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes references, resolving reference candidates, and closes encoder.
+     * Writer does not accept data after it was closed
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Ref ref : refs) {
+            if (!ref.candidate) {
+                out.writeRef(ref);
+            }
+        }
+        Map<DefKey, DefKey> resolutions = resolver.apply(candidateKeys);
+        for (Ref ref : refs) {
+            if (!ref.candidate) {
+                continue;
+            }
+            DefKey adjusted = resolutions.get(ref.defKey);
+            if (adjusted == null) {
+                continue;
+            }
+            ref.defKey = adjusted;
+            out.writeRef(ref);
+        }
+        candidateKeys.clear();
+        out.close();
+    }
+}
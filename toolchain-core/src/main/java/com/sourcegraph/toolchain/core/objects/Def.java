@@ -1,9 +1,15 @@
 package com.sourcegraph.toolchain.core.objects;
 
-import com.google.gson.*;
-import com.sourcegraph.toolchain.core.PathUtil;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.sourcegraph.toolchain.core.FileRegistry;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.Map;
 
 /**
  * Definition object
@@ -108,35 +114,101 @@ public class Def {
     }
 
     /**
-     * JSON serialization rules for definition objects
+     * JSON serialization rules for definition objects. Writes fields directly to the stream, reading is left to
+     * Gson's default adapter
      */
-    public static class JSONSerializer implements JsonSerializer<Def> {
+    public static class JSONSerializer implements TypeAdapterFactory {
+
+        private final FileRegistry files;
+
+        public JSONSerializer() {
+            this(new FileRegistry());
+        }
+
+        /**
+         * @param files registry to take relative paths of files from
+         */
+        public JSONSerializer(FileRegistry files) {
+            this.files = files;
+        }
 
         @Override
-        public JsonElement serialize(Def sym, Type arg1, JsonSerializationContext arg2) {
-            JsonObject object = new JsonObject();
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != Def.class) {
+                return null;
+            }
+            TypeAdapter<Def> delegate = gson.getDelegateAdapter(this, (TypeToken<Def>) type);
+            return (TypeAdapter<T>) new TypeAdapter<Def>() {
+                @Override
+                public void write(JsonWriter out, Def value) throws IOException {
+                    JSONSerializer.this.write(out, value);
+                }
+
+                @Override
+                public Def read(JsonReader in) throws IOException {
+                    return delegate.read(in);
+                }
+            };
+        }
+
+        /**
+         * Writes definition object to the stream
+         */
+        public void write(JsonWriter out, Def sym) throws IOException {
+            if (sym == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
 
             if (sym.file != null) {
-                object.add("File", new JsonPrimitive(PathUtil.relativizeCwd(sym.file)));
+                out.name("File").value(files.relativize(sym.file));
             }
 
-            object.add("Name", new JsonPrimitive(sym.name));
+            out.name("Name").value(sym.name);
+
+            out.name("DefStart").value(sym.defStart);
+            out.name("DefEnd").value(sym.defEnd);
 
-            object.add("DefStart", new JsonPrimitive(sym.defStart));
-            object.add("DefEnd", new JsonPrimitive(sym.defEnd));
+            out.name("Kind").value(sym.kind);
 
-            object.add("Kind", new JsonPrimitive(sym.kind));
+            out.name("Exported").value(sym.exported);
+            out.name("Local").value(sym.local);
+            out.name("Test").value(sym.test);
 
-            object.add("Exported", new JsonPrimitive(sym.exported));
-            object.add("Local", new JsonPrimitive(sym.local));
-            object.add("Test", new JsonPrimitive(sym.test));
+            out.name("Path").value(sym.defKey.formatPath());
+            out.name("TreePath").value(sym.defKey.formatTreePath());
 
-            object.add("Path", new JsonPrimitive(sym.defKey.formatPath()));
-            object.add("TreePath", new JsonPrimitive(sym.defKey.formatTreePath()));
+            out.name("Data");
+            writeData(out, sym.defData);
 
-            object.add("Data", arg2.serialize(sym.defData));
+            out.endObject();
+        }
 
-            return object;
+        /**
+         * Writes definition data the same way Gson writes maps
+         */
+        private static void writeData(JsonWriter out, DefData data) throws IOException {
+            if (data == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            for (Map.Entry<String, Object> entry : data.entrySet()) {
+                out.name(entry.getKey());
+                Object value = entry.getValue();
+                if (value == null) {
+                    out.nullValue();
+                } else if (value instanceof Number) {
+                    out.value((Number) value);
+                } else if (value instanceof Boolean) {
+                    out.value((Boolean) value);
+                } else {
+                    out.value(value.toString());
+                }
+            }
+            out.endObject();
         }
 
     }
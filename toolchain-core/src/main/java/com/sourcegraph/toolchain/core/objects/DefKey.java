@@ -11,10 +11,25 @@ public class DefKey {
     private final URI origin;
     private final String path;
 
+    /**
+     * Symbol table this key is canonical in, null if key was not interned
+     */
+    final SymbolTable symbols;
+
+    /**
+     * Identifier of path in symbol table, -1 if key was not interned
+     */
+    private final int id;
 
     public DefKey(URI origin, String path) {
+        this(origin, path, null, -1);
+    }
+
+    DefKey(URI origin, String path, SymbolTable symbols, int id) {
         this.origin = origin;
         this.path = path;
+        this.symbols = symbols;
+        this.id = id;
     }
 
     public String formatPath() {
@@ -32,6 +47,11 @@ public class DefKey {
 
         DefKey defKey = (DefKey) o;
 
+        if (symbols != null && symbols == defKey.symbols) {
+            // canonical keys of the same table
+            return id == defKey.id;
+        }
+
         if (origin != null ? !origin.equals(defKey.origin) : defKey.origin != null) return false;
         if (path != null ? !path.equals(defKey.path) : defKey.path != null) return false;
 
@@ -40,6 +60,7 @@ public class DefKey {
 
     @Override
     public int hashCode() {
+        // canonical keys must hash the same way equal non-canonical ones do, path caches its hash anyway
         int result = origin != null ? origin.hashCode() : 0;
         result = 31 * result + (path != null ? path.hashCode() : 0);
         return result;
@@ -56,6 +77,14 @@ public class DefKey {
         return path;
     }
 
+    /**
+     * @return identifier of key's path in symbol table that made this key canonical, -1 if key was not interned
+     * (see {@link SymbolTable#intern(DefKey)})
+     */
+    public int getId() {
+        return id;
+    }
+
     @Override
     public String toString() {
         return "DefKey{" +
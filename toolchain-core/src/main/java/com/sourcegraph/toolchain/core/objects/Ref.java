@@ -1,10 +1,15 @@
 package com.sourcegraph.toolchain.core.objects;
 
-import com.google.gson.*;
-import com.sourcegraph.toolchain.core.PathUtil;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.sourcegraph.toolchain.core.FileRegistry;
 import org.apache.commons.lang3.StringUtils;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
 /**
  * Reference to a definition object
@@ -100,25 +105,65 @@ public class Ref {
     }
 
     /**
-     * JSON serialization rules for reference objects
+     * JSON serialization rules for reference objects. Writes fields directly to the stream, reading is left to
+     * Gson's default adapter
      */
-    public static class JSONSerializer implements JsonSerializer<Ref> {
+    public static class JSONSerializer implements TypeAdapterFactory {
 
-        @Override
-        public JsonElement serialize(Ref ref, Type arg1, JsonSerializationContext arg2) {
-            JsonObject object = new JsonObject();
+        private final FileRegistry files;
+
+        public JSONSerializer() {
+            this(new FileRegistry());
+        }
 
-            if (ref.defRepo != null) object.add("DefRepo", new JsonPrimitive(ref.defRepo));
-            if (ref.defUnitType != null) object.add("DefUnitType", new JsonPrimitive(ref.defUnitType));
-            if (ref.defUnit != null) object.add("DefUnit", new JsonPrimitive(ref.defUnit));
-            object.add("DefPath", new JsonPrimitive(ref.defKey.formatPath()));
+        /**
+         * @param files registry to take relative paths of files from
+         */
+        public JSONSerializer(FileRegistry files) {
+            this.files = files;
+        }
 
-            object.add("File", new JsonPrimitive(PathUtil.relativizeCwd(ref.file)));
-            object.add("Start", new JsonPrimitive(ref.start));
-            object.add("End", new JsonPrimitive(ref.end));
-            object.add("Def", new JsonPrimitive(ref.def));
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != Ref.class) {
+                return null;
+            }
+            TypeAdapter<Ref> delegate = gson.getDelegateAdapter(this, (TypeToken<Ref>) type);
+            return (TypeAdapter<T>) new TypeAdapter<Ref>() {
+                @Override
+                public void write(JsonWriter out, Ref value) throws IOException {
+                    JSONSerializer.this.write(out, value);
+                }
+
+                @Override
+                public Ref read(JsonReader in) throws IOException {
+                    return delegate.read(in);
+                }
+            };
+        }
 
-            return object;
+        /**
+         * Writes reference object to the stream
+         */
+        public void write(JsonWriter out, Ref ref) throws IOException {
+            if (ref == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+
+            if (ref.defRepo != null) out.name("DefRepo").value(ref.defRepo);
+            if (ref.defUnitType != null) out.name("DefUnitType").value(ref.defUnitType);
+            if (ref.defUnit != null) out.name("DefUnit").value(ref.defUnit);
+            out.name("DefPath").value(ref.defKey.formatPath());
+
+            out.name("File").value(files.relativize(ref.file));
+            out.name("Start").value(ref.start);
+            out.name("End").value(ref.end);
+            out.name("Def").value(ref.def);
+
+            out.endObject();
         }
 
     }
@@ -0,0 +1,118 @@
+package com.sourcegraph.toolchain.core.objects;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-run table of strings emitted defs and refs are identified by: def key paths and strings of references
+ * (files, definition repositories and units) that reference stores keep as identifiers. Other strings, such as names
+ * and definition data, are not kept, their number grows with the number of definitions.
+ * Table keeps single copy of each distinct string and gives it a compact integer identifier. Each distinct def key
+ * path gets single canonical {@link DefKey} instance, such keys are compared by identifiers.
+ * Thread-safe
+ */
+public class SymbolTable {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private String[] strings = new String[INITIAL_CAPACITY];
+
+    /**
+     * Canonical def keys indexed by identifiers of their paths, null if there is no key with such path yet
+     */
+    private DefKey[] keys = new DefKey[INITIAL_CAPACITY];
+
+    private int size;
+
+    /**
+     * @param s string
+     * @return identifier of a given string, registers string if needed. -1 if string is null
+     */
+    public synchronized int id(String s) {
+        if (s == null) {
+            return -1;
+        }
+        Integer id = ids.get(s);
+        if (id != null) {
+            return id;
+        }
+        if (size == strings.length) {
+            strings = Arrays.copyOf(strings, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        strings[size] = s;
+        ids.put(s, size);
+        return size++;
+    }
+
+    /**
+     * @param id string identifier
+     * @return string with a given identifier
+     */
+    public synchronized String get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown string identifier " + id);
+        }
+        return strings[id];
+    }
+
+    /**
+     * @param s string
+     * @return single (table-wide) copy of a given string
+     */
+    public synchronized String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        // id() may grow the array
+        int id = id(s);
+        return strings[id];
+    }
+
+    /**
+     * @param key def key
+     * @return canonical def key with the same path. Keys that refer to other origins are returned as is
+     */
+    public synchronized DefKey intern(DefKey key) {
+        if (key == null || key.symbols == this || key.getOrigin() != null || key.getPath() == null) {
+            return key;
+        }
+        return key(id(key.getPath()));
+    }
+
+    /**
+     * @param id identifier of def key path
+     * @return canonical def key with a given path
+     */
+    public synchronized DefKey key(int id) {
+        String path = get(id);
+        DefKey canonical = keys[id];
+        if (canonical == null) {
+            canonical = new DefKey(null, path, this, id);
+            keys[id] = canonical;
+        }
+        return canonical;
+    }
+
+    /**
+     * Replaces ref's key and strings with their canonical copies
+     * @param ref reference to update
+     */
+    public synchronized void intern(Ref ref) {
+        ref.defKey = intern(ref.defKey);
+        ref.defRepo = intern(ref.defRepo);
+        ref.defUnitType = intern(ref.defUnitType);
+        ref.defUnit = intern(ref.defUnit);
+        ref.file = intern(ref.file);
+    }
+
+    /**
+     * @return number of distinct strings in the table
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,38 @@
+package com.sourcegraph.toolchain.language;
+
+/**
+ * File that was not processed because it exceeded parse budget
+ */
+public class DegradedFile {
+
+    public static final String BYTES = "bytes";
+    public static final String TOKENS = "tokens";
+    public static final String TIME = "time";
+
+    /**
+     * Path to file (relative to CWD)
+     */
+    public String File;
+
+    /**
+     * Limit that was exceeded: bytes, tokens, or time
+     */
+    public String Reason;
+
+    /**
+     * Configured limit (bytes, tokens, or milliseconds)
+     */
+    public long Limit;
+
+    /**
+     * Observed value (file size, tokens fetched, or milliseconds spent), parsing stops as soon as limit is exceeded
+     */
+    public long Value;
+
+    public DegradedFile(String file, String reason, long limit, long value) {
+        this.File = file;
+        this.Reason = reason;
+        this.Limit = limit;
+        this.Value = value;
+    }
+}
@@ -2,15 +2,8 @@ package com.sourcegraph.toolchain.language;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.*;
 
 /**
  * Extension-based file collector. Allows to declare list of supported file extensions and optional list of
@@ -20,6 +13,8 @@ import java.util.HashSet;
  * - for PHP (with Composer) configuration may be : extensions: .php, exclude: vendor
  * Collection rules are the following: Matching file should contain one of registered extension, be located inside
  * include directories (or they should be empty), and not be in the exclude directories.
+ * Rules are compiled into suffix and prefix lookups when collector is used, directory tree is walked in parallel
+ * (see {@link FileTreeWalk})
  */
 public class ExtensionBasedFileCollector implements FileCollector {
 
@@ -28,6 +23,11 @@ public class ExtensionBasedFileCollector implements FileCollector {
     private Collection<String> includes = new HashSet<>();
     private Collection<String> excludes = new HashSet<>();
 
+    /**
+     * Compiled rules, reset when rules change
+     */
+    private volatile Matchers matchers;
+
     /**
      * Registers one or more extension
      * @param extension extension to register
@@ -35,6 +35,7 @@ public class ExtensionBasedFileCollector implements FileCollector {
      */
     public ExtensionBasedFileCollector extension(String... extension) {
         Collections.addAll(extensions, extension);
+        matchers = null;
         return this;
     }
 
@@ -46,6 +47,7 @@ public class ExtensionBasedFileCollector implements FileCollector {
      */
     public ExtensionBasedFileCollector blockerExtension(String... extension) {
         Collections.addAll(blockerExtensions, extension);
+        matchers = null;
         return this;
     }
 
@@ -57,6 +59,7 @@ public class ExtensionBasedFileCollector implements FileCollector {
      */
     public ExtensionBasedFileCollector include(String... directories) {
         Collections.addAll(includes, directories);
+        matchers = null;
         return this;
     }
 
@@ -67,57 +70,148 @@ public class ExtensionBasedFileCollector implements FileCollector {
      */
     public ExtensionBasedFileCollector exclude(String... directories) {
         Collections.addAll(excludes, directories);
+        matchers = null;
         return this;
     }
 
     @Override
     public Collection<File> collect(File rootDir) throws IOException {
-        Collection<File> files = new ArrayList<>();
-        Files.walkFileTree(rootDir.toPath(), new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                String fileName = file.toString();
-                for (String extension : extensions) {
-                    if (fileName.endsWith(extension)) {
-                        files.add(file.toFile());
-                        break;
-                    }
+        FileTreeWalk walk = new FileTreeWalk(rootDir);
+        return walk.share(this).collect(rootDir);
+    }
+
+    /**
+     * @param fileName name of the file
+     * @return true if file has one of registered extensions
+     */
+    boolean matches(String fileName) {
+        return getMatchers().extensions.matches(fileName);
+    }
+
+    /**
+     * @param fileName name of the file
+     * @return true if file has one of blocker extensions
+     */
+    boolean blocks(String fileName) {
+        return getMatchers().blockerExtensions.matches(fileName);
+    }
+
+    /**
+     * @param rootDir root directory
+     * @param dir directory inside root directory
+     * @return true if directory matches includes (or there are none) and does not match excludes
+     */
+    boolean includes(Path rootDir, Path dir) {
+        Matchers matchers = getMatchers();
+        String rel = rootDir.relativize(dir).toString();
+        if (!includes.isEmpty() && !matchers.includes.matches(rel)) {
+            return false;
+        }
+        return !matchers.excludes.matches(rel);
+    }
+
+    /**
+     * @return description of extension rules (directory rules do not affect which files match)
+     */
+    String getFileRules() {
+        return new TreeSet<>(extensions) + " " + new TreeSet<>(blockerExtensions);
+    }
+
+    private Matchers getMatchers() {
+        Matchers ret = matchers;
+        if (ret == null) {
+            ret = new Matchers(this);
+            matchers = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Compiled collection rules
+     */
+    private static class Matchers {
+
+        final SuffixSet extensions;
+        final SuffixSet blockerExtensions;
+        final PrefixTrie includes;
+        final PrefixTrie excludes;
+
+        Matchers(ExtensionBasedFileCollector collector) {
+            extensions = new SuffixSet(collector.extensions);
+            blockerExtensions = new SuffixSet(collector.blockerExtensions);
+            includes = new PrefixTrie(collector.includes);
+            excludes = new PrefixTrie(collector.excludes);
+        }
+    }
+
+    /**
+     * Set of suffixes, string is checked by looking up its tail of each suffix length instead of comparing it with
+     * every suffix
+     */
+    private static class SuffixSet {
+
+        private final int[] lengths;
+        private final Set<String> suffixes;
+
+        SuffixSet(Collection<String> suffixes) {
+            this.suffixes = new HashSet<>(suffixes);
+            this.lengths = suffixes.stream().mapToInt(String::length).distinct().sorted().toArray();
+        }
+
+        /**
+         * @return true if s ends with one of suffixes
+         */
+        boolean matches(String s) {
+            int length = s.length();
+            for (int suffixLength : lengths) {
+                if (suffixLength > length) {
+                    break;
+                }
+                if (suffixes.contains(s.substring(length - suffixLength))) {
+                    return true;
                 }
-                for (String extension : blockerExtensions) {
-                    if (fileName.endsWith(extension)) {
-                        files.clear();
-                        return FileVisitResult.TERMINATE;
-                    }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Character trie of prefixes, string is checked in a single pass over its characters
+     */
+    private static class PrefixTrie {
+
+        private final Node root = new Node();
+
+        PrefixTrie(Collection<String> prefixes) {
+            for (String prefix : prefixes) {
+                Node node = root;
+                for (int i = 0; i < prefix.length(); i++) {
+                    node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node());
                 }
-                return FileVisitResult.CONTINUE;
+                node.terminal = true;
             }
+        }
 
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
-                    throws IOException {
-                String rel = rootDir.toPath().relativize(dir).toString();
-                if (!includes.isEmpty()) {
-                    boolean matches = false;
-                    for (String include : includes) {
-                        if (rel.startsWith(include)) {
-                            matches = true;
-                            break;
-                        }
-                    }
-                    if (!matches) {
-                        return FileVisitResult.SKIP_SUBTREE;
-                    }
+        /**
+         * @return true if s starts with one of prefixes
+         */
+        boolean matches(String s) {
+            Node node = root;
+            for (int i = 0; !node.terminal; i++) {
+                if (i == s.length()) {
+                    return false;
                 }
-                if (!excludes.isEmpty()) {
-                    for (String exclude : excludes) {
-                        if (rel.startsWith(exclude)) {
-                            return FileVisitResult.SKIP_SUBTREE;
-                        }
-                    }
+                node = node.children.get(s.charAt(i));
+                if (node == null) {
+                    return false;
                 }
-                return FileVisitResult.CONTINUE;
             }
-        });
-        return files;
+            return true;
+        }
+
+        private static class Node {
+            final Map<Character, Node> children = new HashMap<>(4);
+            boolean terminal;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package com.sourcegraph.toolchain.language;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Wall time and allocated bytes of each phase of file processing, and number of tokens.
+ * Lex and parse phases are measured on the thread that parsed the file, walk and emit phases on the thread that
+ * walked it. Walk phase does not include emit phase and processing of files requested while walking
+ */
+public class FileMetrics {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Path to file (relative to CWD)
+     */
+    public String File;
+
+    public Phase Lex = new Phase();
+
+    public Phase Parse = new Phase();
+
+    public Phase Walk = new Phase();
+
+    public Phase Emit = new Phase();
+
+    public Phase Total = new Phase();
+
+    public long Tokens;
+
+    /**
+     * Set if SLL prediction failed and file was parsed again with full LL prediction
+     */
+    public boolean LlFallback;
+
+    /**
+     * Set if file was replayed from parse cache, replay is accounted as walk
+     */
+    public boolean Replayed;
+
+    public FileMetrics(String file) {
+        this.File = file;
+    }
+
+    /**
+     * Recomputes total of all phases
+     * @return this
+     */
+    public FileMetrics updateTotal() {
+        Total = new Phase();
+        Total.add(Lex);
+        Total.add(Parse);
+        Total.add(Walk);
+        Total.add(Emit);
+        return this;
+    }
+
+    /**
+     * @return number of bytes allocated by the current thread so far, 0 if JVM does not support allocation
+     * accounting
+     */
+    public static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Wall time and allocated bytes
+     */
+    public static class Phase {
+
+        public double Millis;
+
+        public long AllocatedBytes;
+
+        private transient long nanos;
+
+        /**
+         * @param nanos wall time in nanoseconds
+         * @param bytes allocated bytes
+         */
+        public void add(long nanos, long bytes) {
+            this.nanos += nanos;
+            this.Millis = Math.round(this.nanos / 1000.0) / 1000.0;
+            this.AllocatedBytes += bytes;
+        }
+
+        public void add(Phase other) {
+            add(other.nanos, other.AllocatedBytes);
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
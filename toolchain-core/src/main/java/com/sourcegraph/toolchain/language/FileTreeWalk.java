@@ -0,0 +1,374 @@
+package com.sourcegraph.toolchain.language;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Single walk of directory tree shared by several file collectors. Each visited file is passed to every collector
+ * interested in it, thus scanning for all languages costs one traversal instead of one per language.
+ * Collectors are registered with {@link #share(FileCollector)} before any of them collects files, walk is made
+ * when the first shared collector is asked to collect. Results are the same collectors produce on their own:
+ * directory includes and excludes are honored per collector, and collector that met blocker extension
+ * gets no files.
+ * Directories are listed in parallel (fork-join task per directory), files are collected in the order sequential
+ * {@link Files#walkFileTree} visits them. Symbolic links are not followed.
+ * Only {@link ExtensionBasedFileCollector} can be shared (up to 64 collectors per walk), other collectors walk
+ * on their own.
+ * Walk may reuse listings of unchanged directories made by the previous walk, see {@link ScanIndex}
+ */
+public class FileTreeWalk {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileTreeWalk.class);
+
+    /**
+     * Collectors are identified by bits of long masks
+     */
+    private static final int MAX_SHARES = Long.SIZE;
+
+    private final File rootDir;
+
+    private final ScanIndex index;
+
+    private final List<Share> shares = new ArrayList<>();
+
+    /**
+     * Mask of collectors that met blocker extension
+     */
+    private final AtomicLong blocked = new AtomicLong();
+
+    private boolean walked;
+
+    /**
+     * @param rootDir directory to walk
+     */
+    public FileTreeWalk(File rootDir) {
+        this(rootDir, null);
+    }
+
+    /**
+     * @param rootDir directory to walk
+     * @param index optional index of directory listings to reuse and update
+     */
+    public FileTreeWalk(File rootDir, ScanIndex index) {
+        this.rootDir = rootDir;
+        this.index = index;
+    }
+
+    /**
+     * Registers collector within the walk
+     * @param collector collector to register
+     * @return collector that takes files from the shared walk if collector can be shared and walk was not made yet,
+     * given collector otherwise
+     */
+    public synchronized FileCollector share(FileCollector collector) {
+        if (walked || !(collector instanceof ExtensionBasedFileCollector) || shares.size() == MAX_SHARES) {
+            return collector;
+        }
+        Share share = new Share((ExtensionBasedFileCollector) collector, 1L << shares.size());
+        shares.add(share);
+        return share;
+    }
+
+    /**
+     * Walks directory tree once, collecting files for all registered collectors
+     * @throws IOException
+     */
+    private synchronized void walk() throws IOException {
+        if (walked) {
+            return;
+        }
+        walked = true;
+        Path root = rootDir.toPath();
+        if (index != null) {
+            index.open(root, getRules());
+        }
+        Listing listing = new Listing(root, root, included(root, root, -1L), null);
+        try {
+            ForkJoinPool.commonPool().invoke(listing);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (index != null) {
+            try {
+                index.save();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to save scan index", e);
+            }
+        }
+        long blockedMask = blocked.get();
+        for (Share share : shares) {
+            if ((blockedMask & share.bit) == 0) {
+                listing.collect(share);
+            }
+        }
+    }
+
+    /**
+     * @return description of rules collectors match files with, listings stored in index depend on them
+     */
+    private String getRules() {
+        return shares.stream().
+                map(share -> share.collector.getFileRules()).
+                sorted().
+                collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * @return true if file matches rules of any collector (regardless of directories they include)
+     */
+    private boolean matchesAny(String fileName) {
+        for (Share share : shares) {
+            if (share.collector.matches(fileName) || share.collector.blocks(fileName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return mask of given collectors that include directory
+     */
+    private long included(Path root, Path dir, long mask) {
+        long ret = 0;
+        for (Share share : shares) {
+            if ((mask & share.bit) != 0 && share.collector.includes(root, dir)) {
+                ret |= share.bit;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Lists single directory (or visits single file if path is not a directory), forks listings of subdirectories.
+     * Keeps directory entries in order: matching files and subdirectory listings
+     */
+    private class Listing extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path root;
+
+        private final Path path;
+
+        /**
+         * Mask of collectors interested in directory
+         */
+        private final long mask;
+
+        /**
+         * Attributes of path if they were read by parent's listing, null otherwise
+         */
+        private final BasicFileAttributes attrs;
+
+        /**
+         * Matching files (with masks of collectors they match) and subdirectory listings, in order
+         */
+        private final List<Object> entries = new ArrayList<>();
+
+        Listing(Path root, Path path, long mask, BasicFileAttributes attrs) {
+            this.root = root;
+            this.path = path;
+            this.mask = mask;
+            this.attrs = attrs;
+        }
+
+        @Override
+        protected void compute() {
+            if (mask == 0) {
+                return;
+            }
+            try {
+                BasicFileAttributes attrs = this.attrs != null ?
+                        this.attrs :
+                        Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (!attrs.isDirectory()) {
+                    visitFile(path);
+                    return;
+                }
+                List<Listing> listings = new ArrayList<>();
+                String dir = index == null ? null : root.relativize(path).toString();
+                long modified = attrs.lastModifiedTime().toMillis();
+                ScanIndex.Listing cached = index == null ? null : index.get(dir, modified);
+                BasicFileAttributes[] cachedAttrs = cached == null ? null : readAttributes(cached);
+                if (cachedAttrs != null) {
+                    index.put(dir, cached);
+                    for (int i = 0; i < cached.names.length; i++) {
+                        if (!visit(path.resolve(cached.names[i]), cachedAttrs[i], listings)) {
+                            break;
+                        }
+                    }
+                } else {
+                    List<String> names = index == null ? null : new ArrayList<>();
+                    BitSet directories = new BitSet();
+                    boolean complete = true;
+                    try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                        for (Path entry : stream) {
+                            BasicFileAttributes entryAttrs = Files.readAttributes(entry,
+                                    BasicFileAttributes.class,
+                                    LinkOption.NOFOLLOW_LINKS);
+                            if (!visit(entry, entryAttrs, listings)) {
+                                complete = false;
+                                break;
+                            }
+                            boolean directory = entryAttrs.isDirectory();
+                            if (names != null && (directory || matchesAny(entry.toString()))) {
+                                directories.set(names.size(), directory);
+                                names.add(entry.getFileName().toString());
+                            }
+                        }
+                    }
+                    if (names != null && complete) {
+                        index.put(dir, new ScanIndex.Listing(modified,
+                                names.toArray(new String[names.size()]),
+                                directories));
+                    }
+                }
+                invokeAll(listings);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Reads attributes of entries of directory listing reused from index
+         * @param cached listing made by the previous scan
+         * @return attributes of listing's entries, null if some entry no longer exists or is no longer of the same
+         * type (directory's modification time may be preserved or restored, for example by archivers or rsync) and
+         * directory should be listed again
+         * @throws IOException
+         */
+        private BasicFileAttributes[] readAttributes(ScanIndex.Listing cached) throws IOException {
+            BasicFileAttributes[] ret = new BasicFileAttributes[cached.names.length];
+            for (int i = 0; i < ret.length; i++) {
+                try {
+                    ret[i] = Files.readAttributes(path.resolve(cached.names[i]),
+                            BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                } catch (NoSuchFileException e) {
+                    LOGGER.debug("Listing of {} is stale, {} no longer exists", path, cached.names[i]);
+                    return null;
+                }
+                if (ret[i].isDirectory() != cached.directories.get(i)) {
+                    LOGGER.debug("Listing of {} is stale, {} changed its type", path, cached.names[i]);
+                    return null;
+                }
+            }
+            return ret;
+        }
+
+        /**
+         * Visits directory entry, subdirectory listings are added to the given list to be invoked later
+         * @return false if every collector met blocker and walk should stop
+         */
+        private boolean visit(Path entry, BasicFileAttributes entryAttrs, List<Listing> listings) {
+            long active = mask & ~blocked.get();
+            if (active == 0) {
+                return false;
+            }
+            if (entryAttrs.isDirectory()) {
+                long included = included(root, entry, active);
+                if (included != 0) {
+                    Listing listing = new Listing(root, entry, included, entryAttrs);
+                    entries.add(listing);
+                    listings.add(listing);
+                }
+            } else {
+                visitFile(entry);
+            }
+            return true;
+        }
+
+        private void visitFile(Path file) {
+            String fileName = file.toString();
+            long matched = 0;
+            for (Share share : shares) {
+                if ((mask & share.bit) == 0) {
+                    continue;
+                }
+                if (share.collector.matches(fileName)) {
+                    matched |= share.bit;
+                }
+                if (share.collector.blocks(fileName)) {
+                    blocked.getAndUpdate(value -> value | share.bit);
+                }
+            }
+            if (matched != 0) {
+                entries.add(new Match(file.toFile(), matched));
+            }
+        }
+
+        /**
+         * Adds files matched by collector to its list, in order
+         */
+        void collect(Share share) {
+            for (Object entry : entries) {
+                if (entry instanceof Listing) {
+                    ((Listing) entry).collect(share);
+                } else if ((((Match) entry).mask & share.bit) != 0) {
+                    share.files.add(((Match) entry).file);
+                }
+            }
+        }
+    }
+
+    /**
+     * File and mask of collectors it matches
+     */
+    private static class Match {
+
+        final File file;
+        final long mask;
+
+        Match(File file, long mask) {
+            this.file = file;
+            this.mask = mask;
+        }
+    }
+
+    /**
+     * Collector that takes files from the shared walk
+     */
+    private class Share implements FileCollector {
+
+        private final ExtensionBasedFileCollector collector;
+
+        /**
+         * Bit identifying collector in masks
+         */
+        private final long bit;
+
+        private final Collection<File> files = new ArrayList<>();
+
+        Share(ExtensionBasedFileCollector collector, long bit) {
+            this.collector = collector;
+            this.bit = bit;
+        }
+
+        @Override
+        public Collection<File> collect(File rootDir) throws IOException {
+            if (!rootDir.equals(FileTreeWalk.this.rootDir)) {
+                return collector.collect(rootDir);
+            }
+            walk();
+            return files;
+        }
+    }
+}
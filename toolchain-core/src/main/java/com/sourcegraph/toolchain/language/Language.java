@@ -1,12 +1,17 @@
 package com.sourcegraph.toolchain.language;
 
+import com.sourcegraph.toolchain.core.FileRegistry;
 import com.sourcegraph.toolchain.core.GraphWriter;
 import com.sourcegraph.toolchain.core.objects.DefKey;
 import com.sourcegraph.toolchain.core.objects.SourceUnit;
+import com.sourcegraph.toolchain.core.objects.SymbolTable;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** Programming language support.
  */
@@ -27,6 +32,16 @@ public interface Language {
      */
     Collection<SourceUnit> getSourceUnits(File rootDir, String repoUri) throws IOException;
 
+    /**
+     * Called before {@link #getSourceUnits(File, String)} when several languages scan the same directory, allows
+     * language to register its file collector within directory walk shared by all languages
+     * @param rootDir root directory
+     * @param repoUri current repository URI
+     * @param walk directory walk to register file collectors within
+     */
+    default void prepareScan(File rootDir, String repoUri, FileTreeWalk walk) {
+    }
+
     /**
      * Sets source unit to process. Called before graphing
      * @param unit source unit to process
@@ -39,11 +54,69 @@ public interface Language {
      */
     void setGraphWriter(GraphWriter writer);
 
+    /**
+     * Sets number of threads to use while graphing. Called before graphing
+     * @param threads number of threads, 1 means sequential processing. Ignored by default
+     */
+    default void setThreads(int threads) {
+    }
+
+    /**
+     * Sets parse cache to replay unchanged files from. Called before graphing
+     * @param cache parse cache, null disables caching. Ignored by default
+     */
+    default void setParseCache(ParseCache cache) {
+    }
+
+    /**
+     * Sets per-file parsing limits. Called before graphing
+     * @param budget limits to apply. Ignored by default
+     */
+    default void setParseBudget(ParseBudget budget) {
+    }
+
+    /**
+     * Enables collection of per-file metrics. Called before graphing
+     * @param collectMetrics true to collect metrics. Ignored by default
+     */
+    default void setCollectMetrics(boolean collectMetrics) {
+    }
+
     /**
      * Graphs current source units, expects data to be written to given writer
      */
     void graph();
 
+    /**
+     * @return files that were not processed during graphing because they exceeded parse budget, empty by default
+     */
+    default Collection<DegradedFile> getDegradedFiles() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return metrics of files processed during graphing, empty if metrics collection is disabled and by default
+     */
+    default Collection<FileMetrics> getFileMetrics() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return symbol table strings and definition keys of emitted definitions and references are interned in.
+     * Default implementation returns new empty table, for languages that do not intern anything
+     */
+    default SymbolTable getSymbolTable() {
+        return new SymbolTable();
+    }
+
+    /**
+     * @return registry of source files that holds relative paths of files of emitted definitions and references.
+     * Default implementation returns new empty registry, for languages that do not register files
+     */
+    default FileRegistry getFileRegistry() {
+        return new FileRegistry();
+    }
+
     /**
      * Attemps to resolve given definition key. For example, we may construct definition key as @looks-like-def@foo()
      * which language may resolve to class:foo() if possible (e.g. using name => defkey map). Toolchain asks to resolve
@@ -53,4 +126,22 @@ public interface Language {
      * @return resolved key or null if resolution failed.
      */
     DefKey resolve(DefKey source);
+
+    /**
+     * Resolves definition keys in bulk (see {@link #resolve(DefKey)}). Toolchain calls it once, when all definitions
+     * and refs were emitted, with distinct keys of all reference candidates. Default implementation calls resolve()
+     * for keys in parallel, thus resolve() is expected to be safe to call concurrently once graph is built
+     * @param sources source keys to resolve
+     * @return resolved keys by source keys, keys that failed to resolve are not included
+     */
+    default Map<DefKey, DefKey> resolveAll(Collection<DefKey> sources) {
+        Map<DefKey, DefKey> resolved = new ConcurrentHashMap<>();
+        sources.parallelStream().forEach(source -> {
+            DefKey target = resolve(source);
+            if (target != null) {
+                resolved.put(source, target);
+            }
+        });
+        return resolved;
+    }
 }
@@ -1,11 +1,16 @@
 package com.sourcegraph.toolchain.language;
 
+import com.sourcegraph.toolchain.core.FileRegistry;
 import com.sourcegraph.toolchain.core.GraphWriter;
 import com.sourcegraph.toolchain.core.PathUtil;
 import com.sourcegraph.toolchain.core.objects.Def;
 import com.sourcegraph.toolchain.core.objects.Ref;
 import com.sourcegraph.toolchain.core.objects.SourceUnit;
+import com.sourcegraph.toolchain.core.objects.SymbolTable;
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,7 +18,12 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -23,6 +33,16 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(LanguageBase.class);
 
+    /**
+     * How many files (per thread) may be parsed ahead of the file being walked in parallel mode
+     */
+    private static final int PARSE_AHEAD = 4;
+
+    /**
+     * Symbol table change that sets unique identifiers counter
+     */
+    private static final String UNIQUE_ID = "#uid";
+
     /**
      * Contains processing path to current file (for example B was scheduled for processing from C scheduled from A)
      */
@@ -38,6 +58,16 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
      */
     protected SourceUnit unit;
 
+    /**
+     * Keeps single copy of strings and def keys of emitted defs and refs
+     */
+    protected SymbolTable symbols = new SymbolTable();
+
+    /**
+     * Source files and their relative paths, shared with graph encoders
+     */
+    protected FileRegistry fileRegistry = new FileRegistry();
+
     /**
      * List of files that were already visited during current session
      */
@@ -48,6 +78,107 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
      */
     protected Set<File> files;
 
+    /**
+     * File collector registered within directory walk shared by languages, see {@link #prepareScan}
+     */
+    private FileCollector scanCollector;
+
+    /**
+     * Number of threads to parse files with, 1 means that files are parsed sequentially
+     */
+    protected int threads = 1;
+
+    /**
+     * Parse tasks submitted to the pool in parallel mode, file => parse result.
+     * Touched only by the thread that walks parse trees
+     */
+    private Map<File, ForkJoinTask<ParseResult>> pending = new HashMap<>();
+
+    /**
+     * Parse result of the file being parsed by the current thread, collects files requested by lexer or parser
+     * (for example by "#include" directive)
+     */
+    private ThreadLocal<ParseResult> parsing = new ThreadLocal<>();
+
+    /**
+     * Generates unique identifiers (e.g. for global scopes such as unnamed namespaces)
+     */
+    private AtomicInteger uniqueIds = new AtomicInteger();
+
+    /**
+     * Parse cache, null if caching is disabled
+     */
+    private ParseCache cache;
+
+    /**
+     * Digest of everything parse tree walk may observe: symbol table changes, visited files, generated identifiers.
+     * Used as a part of parse cache key
+     */
+    private MessageDigest state;
+
+    /**
+     * Scope of declarations (see {@link #getScope(String[])}) => digest of symbol table changes made in scope so far,
+     * null if language does not report reads of declarations or caching is disabled
+     */
+    private Map<String, Long> scopes;
+
+    /**
+     * Digest to compute declaration digests with
+     */
+    private MessageDigest scopeDigest;
+
+    /**
+     * Cache entry being recorded for the file being walked, null if current walk is not recorded
+     */
+    private ParseCache.Entry recording;
+
+    /**
+     * Indicates that symbol table changes are being replayed from cache
+     */
+    private boolean replaying;
+
+    /**
+     * Number of files parsed with SLL prediction mode
+     */
+    private AtomicInteger sllParses = new AtomicInteger();
+
+    /**
+     * Number of files that SLL prediction failed for and that were parsed again with full LL prediction mode
+     */
+    private AtomicInteger llParses = new AtomicInteger();
+
+    /**
+     * Per-file parsing limits
+     */
+    private ParseBudget budget = ParseBudget.UNLIMITED;
+
+    /**
+     * Cancels parses that exceeded time limit, null if there is no time limit
+     */
+    private ScheduledExecutorService watchdog;
+
+    /**
+     * Files that exceeded parse budget
+     */
+    private List<DegradedFile> degraded = new ArrayList<>();
+
+    /**
+     * Metrics of processed files, null if metrics collection is disabled
+     */
+    private List<FileMetrics> metrics;
+
+    /**
+     * Metrics of files being walked, the innermost one is on top
+     */
+    private Deque<FileMetrics> walking = new ArrayDeque<>();
+
+    /**
+     * Time and allocations of the current thread that should not be accounted to walk phase of files being walked
+     * (emit phase and processing of files requested by walk)
+     */
+    private long excludedNanos;
+    private long excludedBytes;
+
     @Override
     public void setSourceUnit(SourceUnit unit) {
         this.unit = unit;
@@ -58,9 +189,61 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
         this.writer = writer;
     }
 
+    @Override
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    @Override
+    public void setParseCache(ParseCache cache) {
+        if (cache != null && !isParseCacheSupported()) {
+            LOGGER.warn("Parse cache is not supported by {} language support", getName());
+            return;
+        }
+        this.cache = cache;
+        this.state = cache == null ? null : ParseCache.newDigest();
+        this.scopes = cache == null || !isSummarySupported() ? null : new HashMap<>();
+        this.scopeDigest = scopes == null ? null : ParseCache.newDigest();
+    }
+
+    @Override
+    public void setParseBudget(ParseBudget budget) {
+        this.budget = budget == null ? ParseBudget.UNLIMITED : budget;
+    }
+
+    @Override
+    public Collection<DegradedFile> getDegradedFiles() {
+        return Collections.unmodifiableList(degraded);
+    }
+
+    @Override
+    public void setCollectMetrics(boolean collectMetrics) {
+        this.metrics = collectMetrics ? new ArrayList<>() : null;
+    }
+
+    @Override
+    public Collection<FileMetrics> getFileMetrics() {
+        return metrics == null ? Collections.emptyList() : Collections.unmodifiableList(metrics);
+    }
+
+    @Override
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    @Override
+    public FileRegistry getFileRegistry() {
+        return fileRegistry;
+    }
+
     /**
      * Base implementation expects single source unit per language
      */
+    @Override
+    public void prepareScan(File rootDir, String repoUri, FileTreeWalk walk) {
+        scanCollector = walk.share(getFileCollector(rootDir, repoUri));
+    }
+
     @Override
     public Collection<SourceUnit> getSourceUnits(File rootDir, String repoUri) throws IOException {
         return Collections.singleton(getSourceUnit(rootDir, repoUri));
@@ -78,13 +261,103 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
                 LOGGER.warn("File {} does not exist or not a file, skipping", sourceFile);
             }
         }
-        // Processing files sequentially
-        this.files.forEach(this::process);
+        prepareGraph();
+        if (cache != null) {
+            // adding or removing files may change processing order or files requested by lexer or parser
+            List<String> paths = this.files.stream().
+                    map(fileRegistry::relativize).
+                    sorted().
+                    collect(Collectors.toList());
+            ParseCache.update(state, paths.toArray(new String[paths.size()]));
+        }
+        if (budget.getMaxMillis() > 0) {
+            watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "parse-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        try {
+            if (threads > 1) {
+                graphParallel();
+            } else {
+                // Processing files sequentially
+                this.files.forEach(this::process);
+            }
+        } finally {
+            if (watchdog != null) {
+                watchdog.shutdownNow();
+                watchdog = null;
+            }
+        }
+        if (sllParses.get() + llParses.get() > 0) {
+            LOGGER.info("{} files parsed with SLL prediction, {} files needed full LL prediction",
+                    sllParses.get(),
+                    llParses.get());
+        }
+        LOGGER.info("{} distinct strings emitted", symbols.size());
+        if (!degraded.isEmpty()) {
+            LOGGER.warn("{} files exceeded parse budget and were not processed", degraded.size());
+            for (DegradedFile file : degraded) {
+                LOGGER.warn("{}: {} {} (limit {})", file.File, file.Reason, file.Value, file.Limit);
+            }
+        }
+    }
+
+    /**
+     * Called by {@link #graph()} when the set of files to process is known, before any of them is processed.
+     * Languages may build lookup structures over {@link #files} here
+     */
+    protected void prepareGraph() {
+    }
+
+    /**
+     * @return number of files parsed with SLL prediction mode so far
+     */
+    public int getSllParses() {
+        return sllParses.get();
+    }
+
+    /**
+     * @return number of files that needed full LL prediction mode so far
+     */
+    public int getLlParses() {
+        return llParses.get();
+    }
+
+    /**
+     * Parses files on a work-stealing pool while walking parse trees in the same order sequential mode does.
+     * Walks (and thus all the symbol tables, counters, and emitted defs and refs) stay on the current thread,
+     * which keeps output identical to the sequential one
+     */
+    private void graphParallel() {
+        LOGGER.info("Parsing files using {} threads", threads);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<File> queue = new ArrayList<>(files);
+        int window = threads * PARSE_AHEAD;
+        int next = 0;
+        try {
+            for (int i = 0; i < queue.size(); i++) {
+                for (; next < queue.size() && next < i + window; next++) {
+                    File file = queue.get(next);
+                    if (!visited.contains(file) && (cache == null || !cache.contains(getName(), file))) {
+                        pending.put(file, pool.submit(() -> parseFile(file)));
+                    }
+                }
+                process(queue.get(i));
+            }
+        } finally {
+            pending.clear();
+            pool.shutdownNow();
+        }
     }
 
     /**
-     * Processes single file. May be called by parser tree listener to add more file for processing.
-     * For example when parser encountered "#include "foo" it may ask to process foo before current file
+     * Processes single file. May be called by lexer, parser, or parse tree listener to add more file for processing.
+     * For example when lexer encountered "#include "foo" it may ask to process foo before current file.
+     * Files requested while parsing are processed right before the parse tree of requesting file is walked.
+     * If language implements {@link #scanDependencies(File)}, such files are found by scanning file before it is
+     * parsed, and are processed from a worklist before the requesting file is parsed
      * @param sourceFile source file to process
      */
     public void process(File sourceFile) {
@@ -93,30 +366,419 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
             LOGGER.debug("Requested processing of not-existing {}", sourceFile);
             return;
         }
+        ParseResult current = parsing.get();
+        if (current != null) {
+            // requested by lexer or parser, deferring until parse tree of current file is ready
+            current.dependencies.add(sourceFile);
+            return;
+        }
+        if (recording != null) {
+            recordEvent(sourceFile);
+        }
+        if (!visit(sourceFile)) {
+            return;
+        }
+
+        if (metrics == null) {
+            processVisited(sourceFile);
+            return;
+        }
+        // processing of this file should not be accounted to the walk of file that requested it
+        long nanos = System.nanoTime();
+        long bytes = FileMetrics.allocatedBytes();
+        long excludedNanos = this.excludedNanos;
+        long excludedBytes = this.excludedBytes;
+        try {
+            processVisited(sourceFile);
+        } finally {
+            this.excludedNanos = excludedNanos + System.nanoTime() - nanos;
+            this.excludedBytes = excludedBytes + FileMetrics.allocatedBytes() - bytes;
+        }
+    }
+
+    /**
+     * Marks file as visited unless it was visited already or is not in the list of files to process
+     * @param sourceFile source file to visit
+     * @return true if file should be processed
+     */
+    private boolean visit(File sourceFile) {
         // Already visited
         if (visited.contains(sourceFile)) {
-            return;
+            pending.remove(sourceFile);
+            return false;
         }
         // Not in the list
         // TODO (alexsaveliev)
         if (!files.contains(sourceFile)) {
             LOGGER.debug("Requested processing of outer file {}", sourceFile);
-            return;
+            return false;
         }
         LOGGER.info("Processing {}", sourceFile);
         visited.add(sourceFile);
+        return true;
+    }
+
+    /**
+     * Processes file and the files it depends on. Dependencies found before parsing are processed from a worklist
+     * (depth first, in the order they were requested) before the requesting file is parsed, thus only the parse tree
+     * of the file being walked is kept in memory and nested includes do not nest calls
+     * @param sourceFile source file to process
+     */
+    private void processVisited(File sourceFile) {
+        Deque<Scheduled> worklist = new ArrayDeque<>();
+        worklist.push(schedule(sourceFile));
+        while (!worklist.isEmpty()) {
+            Scheduled top = worklist.peek();
+            if (top.dependencies.hasNext()) {
+                File dependency = top.dependencies.next();
+                if (visit(dependency)) {
+                    worklist.push(schedule(dependency));
+                }
+                continue;
+            }
+            worklist.pop();
+            parseAndWalk(top);
+        }
+    }
+
+    /**
+     * Finds files given file depends on to be processed before it is parsed and walked (or replayed from cache)
+     * @param sourceFile source file to process
+     * @return scheduled file
+     */
+    private Scheduled schedule(File sourceFile) {
+        Scheduled scheduled;
+        ForkJoinTask<ParseResult> task = pending.remove(sourceFile);
+        if (cache != null) {
+            scheduled = new Scheduled(sourceFile, ParseCache.snapshot(state));
+            ParseCache.update(state, fileRegistry.relativize(sourceFile));
+            scheduled.entry = cache.get(getName(), sourceFile, scheduled.key);
+        } else {
+            scheduled = new Scheduled(sourceFile, null);
+        }
+        if (scheduled.entry != null) {
+            if (task != null) {
+                task.cancel(false);
+            }
+            // files processed before walk may have changed, entry is checked when they are processed
+            scheduled.requested = scheduled.entry.getDependencies();
+        } else if (task != null) {
+            // already parsed (or being parsed) ahead, dependencies are known from parse result
+            scheduled.result = task.join();
+            scheduled.requested = scheduled.result.dependencies;
+        } else {
+            long nanos = System.nanoTime();
+            long bytes = metrics == null ? 0 : FileMetrics.allocatedBytes();
+            scheduled.requested = findDependencies(sourceFile);
+            scheduled.scanNanos = System.nanoTime() - nanos;
+            scheduled.scanBytes = metrics == null ? 0 : FileMetrics.allocatedBytes() - bytes;
+        }
+        scheduled.dependencies = scheduled.requested.iterator();
+        return scheduled;
+    }
+
+    /**
+     * Replays file from cache if entry made for the current state is found and files it depends on left the same
+     * state they did when entry was made. Otherwise replays entry made for other state if declarations its walk
+     * observed are the same as the current ones and it requested the same files, such entry is stored under
+     * the current state as well
+     * @param scheduled file which dependencies were processed
+     * @return true if file was replayed
+     */
+    private boolean replayCached(Scheduled scheduled) {
+        if (cache == null) {
+            return false;
+        }
+        String checkpoint = ParseCache.snapshot(state);
+        ParseCache.Entry entry = scheduled.entry;
+        if (entry == null || !checkpoint.equals(entry.checkpoint)) {
+            entry = scopes == null ? null : cache.find(getName(),
+                    scheduled.file,
+                    e -> isCurrent(e, scheduled.requested));
+            if (entry == null) {
+                return false;
+            }
+            entry.checkpoint = checkpoint;
+            cache.put(getName(), scheduled.file, scheduled.key, entry);
+        }
+        cache.hit();
+        String path = fileRegistry.relativize(scheduled.file);
+        FileMetrics fileMetrics = null;
+        if (metrics != null) {
+            fileMetrics = new FileMetrics(path);
+            fileMetrics.Replayed = true;
+            fileMetrics.Lex.add(scheduled.scanNanos, scheduled.scanBytes);
+            metrics.add(fileMetrics);
+        }
+        ParseCache.Entry replayed = entry;
+        measureWalk(fileMetrics, () -> replay(path, replayed));
+        return true;
+    }
+
+    /**
+     * @param entry cache entry
+     * @param requested files requested by lexer or parser of the current content of file
+     * @return true if replay of entry does the same walk would do in the current state
+     */
+    private boolean isCurrent(ParseCache.Entry entry, Collection<File> requested) {
+        for (Map.Entry<String, Long> read : entry.reads.entrySet()) {
+            if (!read.getValue().equals(scopes.getOrDefault(read.getKey(), 0L))) {
+                return false;
+            }
+        }
+        // walk does not observe processing of files, they only should be the same
+        Iterator<File> files = requested.iterator();
+        for (Object event : entry.events) {
+            if (event instanceof File && (!files.hasNext() || !event.equals(files.next()))) {
+                return false;
+            }
+        }
+        return !files.hasNext();
+    }
+
+    /**
+     * Replays file from cache or parses file unless it was parsed ahead, processes files requested while parsing
+     * that were not processed yet, and walks parse tree
+     * @param scheduled file to parse and walk
+     */
+    private void parseAndWalk(Scheduled scheduled) {
+        File sourceFile = scheduled.file;
+        String key = scheduled.key;
+        if (replayCached(scheduled)) {
+            scheduled.result = null;
+            return;
+        }
+        if (cache != null) {
+            cache.miss();
+        }
+        ParseResult result = scheduled.result == null ? parseFile(sourceFile) : scheduled.result;
+        scheduled.result = null;
+        if (result.metrics != null) {
+            result.metrics.Lex.add(scheduled.scanNanos, scheduled.scanBytes);
+            metrics.add(result.metrics.updateTotal());
+        }
+        ParseCache.Entry previous = recording;
+        recording = key == null ? null : new ParseCache.Entry();
+        try {
+            result.dependencies.forEach(this::process);
+            if (result.error != null) {
+                BudgetExceededException exceeded = BudgetExceededException.find(result.error);
+                if (exceeded == null) {
+                    LOGGER.error("Failed to process {} - unexpected error", sourceFile, result.error);
+                } else {
+                    LOGGER.warn("Skipping {} - {} limit exceeded", sourceFile, exceeded.reason);
+                    degraded.add(new DegradedFile(fileRegistry.relativize(sourceFile),
+                            exceeded.reason,
+                            exceeded.limit,
+                            exceeded.value));
+                }
+                return;
+            }
+
+            processingPath.push(fileRegistry.relativize(sourceFile));
 
-        processingPath.push(PathUtil.relativizeCwd(sourceFile.toPath()));
+            try {
+                measureWalk(result.metrics, () -> walk(sourceFile, result.tree));
+                if (recording != null) {
+                    if (recording.checkpoint == null) {
+                        recording.checkpoint = ParseCache.snapshot(state);
+                    }
+                    cache.put(getName(), sourceFile, key, recording);
+                }
+            } catch (Exception e) {
+                LOGGER.error("Failed to process {} - unexpected error", sourceFile, e);
+            } finally {
+                processingPath.pop();
+            }
+        } finally {
+            recording = previous;
+        }
+    }
 
+    /**
+     * Runs walk (or replay) of a file accounting its time and allocations to the walk phase
+     * @param fileMetrics metrics of file being walked, null if metrics are not collected
+     * @param walk walk to run
+     */
+    private void measureWalk(FileMetrics fileMetrics, Runnable walk) {
+        if (fileMetrics == null) {
+            walk.run();
+            return;
+        }
+        long nanos = System.nanoTime();
+        long bytes = FileMetrics.allocatedBytes();
+        long excludedNanos = this.excludedNanos;
+        long excludedBytes = this.excludedBytes;
+        walking.push(fileMetrics);
         try {
-            parse(sourceFile);
-        } catch (Exception e) {
-            LOGGER.error("Failed to process {} - unexpected error", sourceFile, e);
+            walk.run();
+        } finally {
+            walking.pop();
+            fileMetrics.Walk.add(System.nanoTime() - nanos - (this.excludedNanos - excludedNanos),
+                    FileMetrics.allocatedBytes() - bytes - (this.excludedBytes - excludedBytes));
+            fileMetrics.updateTotal();
+        }
+    }
+
+    /**
+     * Accounts writer call started at given point to the emit phase of the file being walked
+     */
+    private void measureEmit(long nanos, long bytes) {
+        nanos = System.nanoTime() - nanos;
+        bytes = FileMetrics.allocatedBytes() - bytes;
+        walking.peek().Emit.add(nanos, bytes);
+        excludedNanos += nanos;
+        excludedBytes += bytes;
+    }
+
+    /**
+     * Replays cached walk of a file: emits definitions and references, applies symbol table changes
+     * and processes files in the same order the walk did
+     * @param path path to file (relative to CWD)
+     * @param entry cache entry
+     */
+    private void replay(String path, ParseCache.Entry entry) {
+        LOGGER.debug("Replaying {} from cache", path);
+        ParseCache.Entry previous = recording;
+        recording = null;
+        processingPath.push(path);
+        try {
+            for (Object event : entry.events) {
+                if (event instanceof Def) {
+                    writer.writeDef((Def) event);
+                } else if (event instanceof Ref) {
+                    writer.writeRef((Ref) event);
+                } else if (event instanceof String[]) {
+                    String[] change = (String[]) event;
+                    ParseCache.update(state, change);
+                    if (scopes != null) {
+                        String scope = getScope(change);
+                        scopes.put(scope, ParseCache.chain(scopeDigest, scopes.getOrDefault(scope, 0L), change));
+                    }
+                    replaying = true;
+                    try {
+                        replay(change);
+                    } finally {
+                        replaying = false;
+                    }
+                } else {
+                    process((File) event);
+                }
+            }
         } finally {
             processingPath.pop();
+            recording = previous;
+        }
+    }
+
+    /**
+     * Records symbol table change made by the walk of current file, so it can be re-applied when file is replayed
+     * from parse cache. Languages that support parse cache should record every change that may be observed by
+     * walks of other files and re-apply changes in {@link #replay(String[])}
+     * @param change change description, for example "table name", "key", "value"
+     */
+    public void record(String... change) {
+        if (state == null || replaying) {
+            return;
+        }
+        if (recording != null) {
+            recordEvent(change);
+        }
+        ParseCache.update(state, change);
+        if (scopes != null) {
+            // walk's own changes depend on the state of scope they were made in
+            String scope = getScope(change);
+            observe(scope);
+            scopes.put(scope, ParseCache.chain(scopeDigest, scopes.getOrDefault(scope, 0L), change));
+        }
+    }
+
+    /**
+     * Adds event to the cache entry being recorded, the first event that is not processing of a file marks
+     * the state walk started in
+     * @param event event to add
+     */
+    private void recordEvent(Object event) {
+        if (recording.checkpoint == null && !(event instanceof File)) {
+            recording.checkpoint = ParseCache.snapshot(state);
+        }
+        recording.events.add(event);
+    }
+
+    /**
+     * Reports that walk of current file reads declarations of a given scope. Languages that support declaration
+     * summaries (see {@link #isSummarySupported()}) should report every symbol table read, so cache entry of a file
+     * may be replayed whenever declarations it observed are the same
+     * @param table symbol table name
+     * @param name name of declaration (for example type name) or null if walk observes the whole table
+     */
+    protected void observe(String table, String name) {
+        if (scopes != null && recording != null) {
+            observe(scope(table, name));
+        }
+    }
+
+    private void observe(String scope) {
+        if (recording != null && !recording.reads.containsKey(scope)) {
+            recording.reads.put(scope, scopes.getOrDefault(scope, 0L));
+        }
+    }
+
+    /**
+     * @param change symbol table change, see {@link #record(String...)}
+     * @return scope change belongs to, see {@link #scope(String, String)}. Walk that observes scope depends on
+     * all the changes made in it. By default change belongs to its table
+     */
+    protected String getScope(String[] change) {
+        return scope(change[0], null);
+    }
+
+    /**
+     * @param table symbol table name
+     * @param name name of declaration or null if scope is the whole table
+     * @return scope identifier
+     */
+    protected static String scope(String table, String name) {
+        return name == null ? table : table + ' ' + name;
+    }
+
+    /**
+     * @return true if language reports every read of declarations with {@link #observe(String, String)}, and thus
+     * cache entry of a file may be replayed when declarations it observed did not change, regardless of changes
+     * made to other declarations
+     */
+    protected boolean isSummarySupported() {
+        return false;
+    }
+
+    /**
+     * Re-applies symbol table change made by {@link #record(String...)}. Implementation should apply it
+     * the same way original walk did, changes made while replaying are not recorded
+     * @param change change to apply
+     */
+    protected void replay(String[] change) {
+        if (UNIQUE_ID.equals(change[0])) {
+            uniqueIds.set(Integer.parseInt(change[1]));
         }
     }
 
+    /**
+     * @return true if language records all symbol table changes (see {@link #record(String...)}) and thus may
+     * replay files from parse cache
+     */
+    protected boolean isParseCacheSupported() {
+        return false;
+    }
+
+    /**
+     * @return next unique identifier in the current session
+     */
+    public int nextUniqueId() {
+        int id = uniqueIds.incrementAndGet();
+        record(UNIQUE_ID, String.valueOf(id));
+        return id;
+    }
+
     /**
      * @param ctx parser rule context
      * @param kind def's kind (i.e. "const")
@@ -176,7 +838,18 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
      * @param def definition to emit
      */
     public void emit(Def def) {
-        writer.writeDef(def);
+        def.defKey = symbols.intern(def.defKey);
+        if (recording != null) {
+            recordEvent(def);
+        }
+        if (walking.isEmpty()) {
+            writer.writeDef(def);
+        } else {
+            long nanos = System.nanoTime();
+            long bytes = FileMetrics.allocatedBytes();
+            writer.writeDef(def);
+            measureEmit(nanos, bytes);
+        }
         // auto-adding self-references
         Ref ref = new Ref();
         ref.defKey = def.defKey;
@@ -192,7 +865,18 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
      * @param ref reference to emit
      */
     public void emit(Ref ref) {
-        writer.writeRef(ref);
+        symbols.intern(ref);
+        if (recording != null) {
+            recordEvent(ref);
+        }
+        if (walking.isEmpty()) {
+            writer.writeRef(ref);
+        } else {
+            long nanos = System.nanoTime();
+            long bytes = FileMetrics.allocatedBytes();
+            writer.writeRef(ref);
+            measureEmit(nanos, bytes);
+        }
     }
 
     /**
@@ -203,23 +887,33 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
     }
 
     /**
-     * Parses given source file and emits defs and refs.
+     * Parses given source file. May be called from multiple threads at once, thus implementation should not
+     * touch language's symbol tables or emit anything.
      * Implementation expects to do something like
      * {code}
      * GrammarConfiguration configuration = LanguageBase.createGrammarConfiguration(sourceFile,
      * (LANGUAGE)Lexer.class,
      * (LANGUAGE)Parser.class,
      * new DefaultErrorListener(sourceFile));
-     * ParseTree tree = (((LANGUAGE)Parser) configuration.parser).(ROOTELEMENT)();
+     * return configuration.parse(((LANGUAGE)Parser) configuration.parser::(ROOTELEMENT));
+     * {/code}
+     * @param sourceFile source file to parse
+     * @return parse tree built by ANTLR
+     * @throws ParseException
+     */
+    protected abstract ParseTree parse(File sourceFile) throws ParseException;
+
+    /**
+     * Traverses parse tree built by ANTLR emitting defs and refs.
+     * Implementation expects to do something like
+     * {code}
      * ParseTreeWalker walker = new ParseTreeWalker();
      * walker.walk(new (LANGUAGE)ParseTreeListener(this), tree);
      * {/code}
-     * We expect that implementation will ask ANTLR to tokenize and parse source file and then will
-     * traverse AST built by ANTLR emitting defs and refs
-     * @param sourceFile source file to process
-     * @throws ParseException
+     * @param sourceFile source file being processed
+     * @param tree parse tree made by {@link #parse(File)}
      */
-    protected abstract void parse(File sourceFile) throws ParseException;
+    protected abstract void walk(File sourceFile, ParseTree tree);
 
     /**
      * @param rootDir root directory
@@ -240,7 +934,8 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
         SourceUnit unit = new SourceUnit();
         unit.Name = getName();
         unit.Dir = PathUtil.relativizeCwd(rootDir.toPath());
-        Collection<File> files = getFileCollector(rootDir, repoUri).collect(rootDir);
+        FileCollector collector = scanCollector == null ? getFileCollector(rootDir, repoUri) : scanCollector;
+        Collection<File> files = collector.collect(rootDir);
         unit.Files = files.stream().map(File::toString).collect(Collectors.toList());
         return unit;
     }
@@ -276,7 +971,7 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
         lexer.removeErrorListeners();
         lexer.addErrorListener(errorListener);
 
-        TokenStream tokens = new CommonTokenStream(lexer);
+        TokenStream tokens = new BudgetedTokenStream(lexer, support.budget, support.parsing.get());
         Constructor<? extends Parser> parserConstructor = parserClass.getConstructor(TokenStream.class);
         Parser parser = parserConstructor.newInstance(tokens);
         parser.removeErrorListeners();
@@ -285,16 +980,109 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
         GrammarConfiguration configuration = new GrammarConfiguration();
         configuration.lexer = lexer;
         configuration.parser = parser;
+        configuration.support = support;
+        configuration.errorListener = errorListener;
+        configuration.result = support.parsing.get();
         return configuration;
     }
 
     /**
      * @param sourceFile input file
-     * @return character stream to read data from
+     * @return character stream to read data from, file is expected to be in platform's default encoding
      * @throws IOException
      */
     protected CharStream getCharStream(File sourceFile) throws IOException {
-        return new ANTLRFileStream(sourceFile.getPath());
+        return MappedCharStream.open(sourceFile, Charset.defaultCharset(), null);
+    }
+
+    /**
+     * Requests files given file depends on with {@link #process(File)} exactly as lexer used by {@link #parse(File)}
+     * would (for example, for "#include" directives), but without parsing file. Called before file is parsed, thus
+     * requested files are processed before it without keeping its parse tree in memory.
+     * Default implementation requests nothing, languages that request files while parsing should override it,
+     * files requested by parse tree listeners are processed as they are requested
+     * @param sourceFile source file
+     * @throws IOException
+     */
+    protected void scanDependencies(File sourceFile) throws IOException {
+    }
+
+    /**
+     * Runs lexer over the whole input within the token limit parse has, so lexer requests the same files
+     * it does when file is parsed
+     * @param lexer lexer to run
+     */
+    protected void scan(TokenSource lexer) {
+        int tokens = 0;
+        for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+            if (budget.getMaxTokens() > 0 && ++tokens > budget.getMaxTokens()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return limits parse of each file is subject to
+     */
+    protected ParseBudget getParseBudget() {
+        return budget;
+    }
+
+    /**
+     * Scans file for dependencies in the current thread
+     * @param sourceFile file to scan
+     * @return files requested by {@link #scanDependencies(File)}
+     */
+    private Collection<File> findDependencies(File sourceFile) {
+        if (budget.getMaxBytes() > 0 && sourceFile.length() > budget.getMaxBytes()) {
+            return Collections.emptyList();
+        }
+        ParseResult result = new ParseResult();
+        parsing.set(result);
+        try {
+            scanDependencies(sourceFile);
+        } catch (Exception e) {
+            // parse will fail as well and report an error, files requested so far are still processed first
+            LOGGER.debug("Failed to scan {} for dependencies", sourceFile, e);
+        } finally {
+            parsing.remove();
+        }
+        return result.dependencies;
+    }
+
+    /**
+     * Parses file in the current thread collecting files requested while parsing
+     * @param sourceFile file to parse
+     * @return parse result
+     */
+    private ParseResult parseFile(File sourceFile) {
+        ParseResult result = new ParseResult();
+        if (metrics != null) {
+            result.metrics = new FileMetrics(fileRegistry.relativize(sourceFile));
+        }
+        long size = sourceFile.length();
+        if (budget.getMaxBytes() > 0 && size > budget.getMaxBytes()) {
+            result.error = new BudgetExceededException(DegradedFile.BYTES, budget.getMaxBytes(), size);
+            return result;
+        }
+        parsing.set(result);
+        ScheduledFuture<?> timeout = null;
+        if (watchdog != null) {
+            timeout = watchdog.schedule(() -> {
+                result.cancelled = true;
+            }, budget.getMaxMillis(), TimeUnit.MILLISECONDS);
+        }
+        try {
+            result.tree = parse(sourceFile);
+        } catch (Exception e) {
+            result.error = e;
+        } finally {
+            parsing.remove();
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+        return result;
     }
 
     /**
@@ -303,5 +1091,193 @@ public abstract class LanguageBase implements com.sourcegraph.toolchain.language
     protected static class GrammarConfiguration {
         public Lexer lexer;
         public Parser parser;
+        private LanguageBase support;
+        private ANTLRErrorListener errorListener;
+        private ParseResult result;
+
+        /**
+         * Invokes parser's start rule in two stages. First stage uses SLL prediction and bails out on the first
+         * syntax error, second stage rewinds token stream and parses it again with full LL prediction and regular
+         * error recovery. SLL either produces the same tree LL does or fails, thus result does not depend on the stage
+         * @param rule start rule, for example parser::translationunit
+         * @return parse tree
+         */
+        public <T extends ParseTree> T parse(Supplier<T> rule) {
+            FileMetrics metrics = result == null ? null : result.metrics;
+            if (metrics == null) {
+                return parseTwoStage(rule);
+            }
+            // lexing everything upfront to tell lexer and parser apart
+            long nanos = System.nanoTime();
+            long bytes = FileMetrics.allocatedBytes();
+            BufferedTokenStream tokens = (BufferedTokenStream) parser.getTokenStream();
+            tokens.fill();
+            metrics.Lex.add(System.nanoTime() - nanos, FileMetrics.allocatedBytes() - bytes);
+            metrics.Tokens = tokens.size();
+            nanos = System.nanoTime();
+            bytes = FileMetrics.allocatedBytes();
+            try {
+                return parseTwoStage(rule);
+            } finally {
+                metrics.Parse.add(System.nanoTime() - nanos, FileMetrics.allocatedBytes() - bytes);
+            }
+        }
+
+        private <T extends ParseTree> T parseTwoStage(Supplier<T> rule) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+            // syntax errors will be reported by second stage if any
+            parser.removeErrorListeners();
+            try {
+                T tree = rule.get();
+                support.sllParses.incrementAndGet();
+                return tree;
+            } catch (ParseCancellationException e) {
+                support.llParses.incrementAndGet();
+                if (result != null && result.metrics != null) {
+                    result.metrics.LlFallback = true;
+                }
+            }
+            // lexer is not restarted, tokens it made are reused
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.addErrorListener(errorListener);
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.reset();
+            return rule.get();
+        }
+    }
+
+    /**
+     * Holder for parse tree, parse error, and files requested while parsing
+     */
+    private static class ParseResult {
+        ParseTree tree;
+        Exception error;
+        Collection<File> dependencies = new LinkedList<>();
+        long started = System.currentTimeMillis();
+        /**
+         * Metrics of lex and parse phases, null if metrics are not collected
+         */
+        FileMetrics metrics;
+        /**
+         * Set by watchdog when parse took too long
+         */
+        volatile boolean cancelled;
+    }
+
+    /**
+     * File whose dependencies are processed before it is parsed and walked
+     */
+    private static class Scheduled {
+        final File file;
+        /**
+         * Parse cache key, null if caching is disabled
+         */
+        final String key;
+        /**
+         * Files requested by lexer or parser
+         */
+        Collection<File> requested = Collections.emptyList();
+        Iterator<File> dependencies = Collections.emptyIterator();
+        /**
+         * Cache entry made for the state file is processed in, if any
+         */
+        ParseCache.Entry entry;
+        /**
+         * Parse result if file was parsed ahead
+         */
+        ParseResult result;
+        /**
+         * Time and allocations of dependency scan, accounted to lex phase
+         */
+        long scanNanos;
+        long scanBytes;
+
+        Scheduled(File file, String key) {
+            this.file = file;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Token stream that enforces token and time limits. Parser (and its prediction in particular) constantly
+     * looks at tokens, thus checking for cancellation there stops parse shortly after watchdog fired
+     */
+    private static class BudgetedTokenStream extends CommonTokenStream {
+
+        private final ParseBudget budget;
+
+        /**
+         * Result of the current parse, null if file is not being parsed by {@link #parseFile(File)}
+         */
+        private final ParseResult result;
+
+        BudgetedTokenStream(TokenSource tokenSource, ParseBudget budget, ParseResult result) {
+            super(tokenSource);
+            this.budget = budget;
+            this.result = result;
+        }
+
+        @Override
+        public Token LT(int k) {
+            checkTime();
+            return super.LT(k);
+        }
+
+        @Override
+        public void consume() {
+            checkTime();
+            super.consume();
+        }
+
+        @Override
+        protected int fetch(int n) {
+            checkTime();
+            int fetched = super.fetch(n);
+            if (budget.getMaxTokens() > 0 && tokens.size() > budget.getMaxTokens()) {
+                throw new BudgetExceededException(DegradedFile.TOKENS, budget.getMaxTokens(), tokens.size());
+            }
+            return fetched;
+        }
+
+        private void checkTime() {
+            if (result != null && result.cancelled) {
+                throw new BudgetExceededException(DegradedFile.TIME,
+                        budget.getMaxMillis(),
+                        System.currentTimeMillis() - result.started);
+            }
+        }
+    }
+
+    /**
+     * Aborts parsing of a file that exceeded parse budget
+     */
+    private static class BudgetExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        final String reason;
+        final long limit;
+        final long value;
+
+        BudgetExceededException(String reason, long limit, long value) {
+            super(reason + " limit " + limit + " exceeded");
+            this.reason = reason;
+            this.limit = limit;
+            this.value = value;
+        }
+
+        /**
+         * @param e exception (possibly wrapped by language support's parse method)
+         * @return budget exception that caused given one if any
+         */
+        static BudgetExceededException find(Throwable e) {
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t instanceof BudgetExceededException) {
+                    return (BudgetExceededException) t;
+                }
+            }
+            return null;
+        }
     }
 }
@@ -10,7 +10,9 @@ import java.io.IOException;
 import java.util.*;
 
 /**
- * Languages registry. Uses service loader mechanism to lookup for installed languages
+ * Languages registry. Uses service loader mechanism to lookup for installed languages.
+ * Language supports keep per-unit state, so registry hands out new instance on each request and registered
+ * instances only serve as prototypes
  */
 public class LanguageRegistry {
 
@@ -25,7 +27,7 @@ public class LanguageRegistry {
     private static LanguageRegistry instance;
 
     /**
-     * Map name => language
+     * Map name => language prototype
      */
     private Map<String, Language> map = new HashMap<>();
 
@@ -40,7 +42,7 @@ public class LanguageRegistry {
 
     }
 
-    public static LanguageRegistry getInstance() {
+    public static synchronized LanguageRegistry getInstance() {
         if (instance == null) {
             instance = new LanguageRegistry();
         }
@@ -60,18 +62,20 @@ public class LanguageRegistry {
 
     /**
      * @param language language name
-     * @return return language support associated with given name if there is any
+     * @return return new instance of language support associated with given name if there is any
      */
     public Language get(String language) {
         if (!language.startsWith(PREFIX)) {
             return null;
         }
         language = StringUtils.substringAfter(language, PREFIX);
-        return map.get(getCanonicalLanguageName(language));
+        Language prototype = map.get(getCanonicalLanguageName(language));
+        return prototype == null ? null : newInstance(prototype);
     }
 
     /**
-     * Sequentially asks each registered language support to scan for source units
+     * Sequentially asks each registered language support to scan for source units. Languages collect their files
+     * in a single directory walk (see {@link FileTreeWalk})
      *
      * @param rootDir root directory
      * @param repoUri current repository URI
@@ -79,8 +83,29 @@ public class LanguageRegistry {
      * @throws IOException
      */
     public Collection<SourceUnit> getSourceUnits(File rootDir, String repoUri) throws IOException {
+        return getSourceUnits(rootDir, repoUri, null);
+    }
+
+    /**
+     * Sequentially asks each registered language support to scan for source units. Languages collect their files
+     * in a single directory walk (see {@link FileTreeWalk})
+     *
+     * @param rootDir root directory
+     * @param repoUri current repository URI
+     * @param index optional index of directory listings made by the previous scan
+     * @return list of source units found  by all registered language supports
+     * @throws IOException
+     */
+    public Collection<SourceUnit> getSourceUnits(File rootDir, String repoUri, ScanIndex index) throws IOException {
         Collection<SourceUnit> units = new ArrayList<>();
-        for (Language language : map.values()) {
+        Collection<Language> languages = new ArrayList<>();
+        FileTreeWalk walk = new FileTreeWalk(rootDir, index);
+        for (Language prototype : map.values()) {
+            Language language = newInstance(prototype);
+            language.prepareScan(rootDir, repoUri, walk);
+            languages.add(language);
+        }
+        for (Language language : languages) {
             Collection<SourceUnit> languageUnits = language.getSourceUnits(rootDir, repoUri);
             if (languageUnits == null) {
                 continue;
@@ -93,6 +118,19 @@ public class LanguageRegistry {
         return units;
     }
 
+    /**
+     * @param prototype registered language support
+     * @return new instance of the same language support class, services are required to have public no-arg
+     * constructor
+     */
+    private static Language newInstance(Language prototype) {
+        try {
+            return prototype.getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to instantiate " + prototype.getClass().getName(), e);
+        }
+    }
+
     /**
      * @param language language
      * @return canonical language name (lowercase)
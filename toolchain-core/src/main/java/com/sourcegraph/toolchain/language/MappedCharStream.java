@@ -0,0 +1,281 @@
+package com.sourcegraph.toolchain.language;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Character stream over source file that avoids copying file content where possible.
+ * Large files are memory-mapped, small ones are read into byte buffer. Pure ASCII content (the most common case)
+ * is served directly from bytes, otherwise content is decoded into character array once.
+ * Indexes are the same ANTLRFileStream produces (UTF-16 code units), thus are offsets of emitted defs and refs
+ */
+public class MappedCharStream implements CharStream {
+
+    /**
+     * Files larger than this are memory-mapped
+     */
+    private static final int MAP_THRESHOLD = 1 << 16;
+
+    private static final long NON_ASCII_MASK = 0x8080808080808080L;
+
+    /**
+     * Transforms characters while stream is being opened, for example to hide preprocessor directives from lexer.
+     * Receives all characters of the source in order, thus may keep state. New instance is expected per stream
+     */
+    public interface CharTransform {
+
+        /**
+         * @param c source character
+         * @return character to put into stream instead
+         */
+        char apply(char c);
+    }
+
+    private final String name;
+
+    /**
+     * Content of ASCII source, one byte per character. Null if source was decoded
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * Decoded content of non-ASCII source
+     */
+    private final char[] chars;
+
+    /**
+     * Number of characters in the stream
+     */
+    private final int n;
+
+    /**
+     * Indexes (sorted) and values of ASCII source characters changed by transform
+     */
+    private int[] overrideIndexes;
+    private char[] overrideChars;
+    private int overrides;
+
+    /**
+     * Current position
+     */
+    private int p;
+
+    private MappedCharStream(String name, ByteBuffer bytes, char[] chars, int n) {
+        this.name = name;
+        this.bytes = bytes;
+        this.chars = chars;
+        this.n = n;
+    }
+
+    /**
+     * Opens character stream
+     * @param file source file
+     * @param charset source file encoding
+     * @param transform optional transform to apply to characters
+     * @return character stream over file content
+     * @throws IOException
+     */
+    public static MappedCharStream open(File file, Charset charset, CharTransform transform) throws IOException {
+        ByteBuffer bytes = read(file);
+        MappedCharStream stream;
+        if (isAsciiCompatible(charset) && isAscii(bytes)) {
+            stream = new MappedCharStream(file.getPath(), bytes, null, bytes.limit());
+            if (transform != null) {
+                stream.transformBytes(transform);
+            }
+        } else {
+            CharBuffer decoded = charset.decode(bytes);
+            char[] chars;
+            if (decoded.hasArray() && decoded.arrayOffset() == 0) {
+                chars = decoded.array();
+            } else {
+                chars = new char[decoded.remaining()];
+                decoded.get(chars);
+            }
+            stream = new MappedCharStream(file.getPath(), null, chars, decoded.limit());
+            if (transform != null) {
+                for (int i = 0; i < stream.n; i++) {
+                    chars[i] = transform.apply(chars[i]);
+                }
+            }
+        }
+        return stream;
+    }
+
+    @Override
+    public void consume() {
+        if (p >= n) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        p++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            // undefined
+            return 0;
+        }
+        if (i < 0) {
+            // e.g., translate LA(-1) to use offset i=0; then data[p+0-1]
+            i++;
+            if (p + i - 1 < 0) {
+                return IntStream.EOF;
+            }
+        }
+        int index = p + i - 1;
+        if (index >= n) {
+            return IntStream.EOF;
+        }
+        return charAt(index);
+    }
+
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return p;
+    }
+
+    @Override
+    public void seek(int index) {
+        p = Math.max(0, Math.min(index, n));
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public String getSourceName() {
+        return name;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = interval.a;
+        int stop = Math.min(interval.b, n - 1);
+        if (start >= n || stop < start) {
+            return "";
+        }
+        int count = stop - start + 1;
+        if (chars != null) {
+            return new String(chars, start, count);
+        }
+        char[] text = new char[count];
+        for (int i = 0; i < count; i++) {
+            text[i] = (char) bytes.get(start + i);
+        }
+        if (overrides > 0) {
+            int o = Arrays.binarySearch(overrideIndexes, 0, overrides, start);
+            for (o = o < 0 ? -o - 1 : o; o < overrides && overrideIndexes[o] <= stop; o++) {
+                text[overrideIndexes[o] - start] = overrideChars[o];
+            }
+        }
+        return new String(text);
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, n - 1));
+    }
+
+    private char charAt(int index) {
+        if (chars != null) {
+            return chars[index];
+        }
+        if (overrides > 0) {
+            int o = Arrays.binarySearch(overrideIndexes, 0, overrides, index);
+            if (o >= 0) {
+                return overrideChars[o];
+            }
+        }
+        return (char) bytes.get(index);
+    }
+
+    /**
+     * Passes ASCII content through transform recording changed characters
+     */
+    private void transformBytes(CharTransform transform) {
+        for (int i = 0; i < n; i++) {
+            char c = (char) bytes.get(i);
+            char t = transform.apply(c);
+            if (t == c) {
+                continue;
+            }
+            if (overrideIndexes == null) {
+                overrideIndexes = new int[16];
+                overrideChars = new char[16];
+            } else if (overrides == overrideIndexes.length) {
+                overrideIndexes = Arrays.copyOf(overrideIndexes, overrides * 2);
+                overrideChars = Arrays.copyOf(overrideChars, overrides * 2);
+            }
+            overrideIndexes[overrides] = i;
+            overrideChars[overrides] = t;
+            overrides++;
+        }
+    }
+
+    /**
+     * Maps large files into memory and reads small ones
+     */
+    private static ByteBuffer read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large");
+            }
+            if (size < MAP_THRESHOLD) {
+                return ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * @return true if ASCII characters are encoded by the same single bytes in a given charset
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        String name = charset.name();
+        return charset.equals(StandardCharsets.UTF_8) ||
+                charset.equals(StandardCharsets.US_ASCII) ||
+                name.startsWith("ISO-8859-") ||
+                name.startsWith("windows-125");
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        int size = bytes.limit();
+        int i = 0;
+        for (; i + 8 <= size; i += 8) {
+            if ((bytes.getLong(i) & NON_ASCII_MASK) != 0) {
+                return false;
+            }
+        }
+        for (; i < size; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,39 @@
+package com.sourcegraph.toolchain.language;
+
+/**
+ * Per-file parsing limits. Files that exceed any of them are not processed and reported as degraded
+ * (see {@link Language#getDegradedFiles()}). Zero means no limit
+ */
+public class ParseBudget {
+
+    public static final ParseBudget UNLIMITED = new ParseBudget(0, 0, 0);
+
+    private final long maxBytes;
+
+    private final int maxTokens;
+
+    private final long maxMillis;
+
+    /**
+     * @param maxBytes maximum file size in bytes
+     * @param maxTokens maximum number of tokens parser may request from lexer
+     * @param maxMillis maximum parse time in milliseconds
+     */
+    public ParseBudget(long maxBytes, int maxTokens, long maxMillis) {
+        this.maxBytes = maxBytes;
+        this.maxTokens = maxTokens;
+        this.maxMillis = maxMillis;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+}
@@ -0,0 +1,510 @@
+package com.sourcegraph.toolchain.language;
+
+import com.sourcegraph.toolchain.core.GraphRecords;
+import com.sourcegraph.toolchain.core.PathUtil;
+import com.sourcegraph.toolchain.core.objects.Def;
+import com.sourcegraph.toolchain.core.objects.Ref;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.CodeSource;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.sourcegraph.toolchain.core.GraphRecords.readString;
+import static com.sourcegraph.toolchain.core.GraphRecords.writeString;
+
+/**
+ * Persistent cache of parse tree walk results, allows to replay unchanged files instead of parsing them.
+ * Entry is keyed by toolchain version (see {@link #codeVersion(Class[])}), language, file path and content, and by
+ * the digest of everything file's walk
+ * may observe: symbol table changes made by files walked before, visited files, generated identifiers, and
+ * unit's file list. Thus entry is invalidated when file changes, when declarations made by files walked before
+ * change, or when files are added or removed.
+ * Entry holds what file's walk did, in order: emitted definitions and references, symbol table changes
+ * (see {@link LanguageBase#record(String...)}) and files processed. Files requested before walk started
+ * (for example by "#include" directives) may change as well, thus entry also holds the digest of state they left,
+ * and is replayed only if they leave the same state again.
+ * Languages that report symbol table reads (see {@link LanguageBase#observe(String, String)}) also store digests
+ * of the declarations walk observed, thus entry made for other state may be found with {@link #find} and replayed
+ * when declarations it depends on are the same, for example when header is included after different files
+ * or when unrelated files changed.
+ * Cache keeps at most {@link #MAX_CONTENTS} most recently stored contents per file path, and at most
+ * {@link #MAX_ENTRIES} most recently stored entries per content, older ones are removed when entry is stored.
+ * Entries made by other toolchain versions are not used and not removed.
+ * Cache is not thread-safe
+ */
+public class ParseCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParseCache.class);
+
+    /**
+     * Entry format version, bump when format changes
+     */
+    private static final int FORMAT = 2;
+
+    private static final int END = 0;
+    private static final int DEF = 1;
+    private static final int REF = 2;
+    private static final int CHANGE = 3;
+    private static final int PROCESS = 4;
+
+    /**
+     * Maximum number of entries (the most recent ones) {@link #find} checks
+     */
+    private static final int MAX_CANDIDATES = 4;
+
+    /**
+     * Maximum number of entries kept for the same file content
+     */
+    private static final int MAX_ENTRIES = 8;
+
+    /**
+     * Maximum number of contents entries are kept for per file path
+     */
+    private static final int MAX_CONTENTS = 2;
+
+    /**
+     * code location => digest of code found there, code does not change while JVM runs
+     */
+    private static final Map<String, String> CODE_VERSIONS = new ConcurrentHashMap<>();
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+
+    private final String version;
+
+    /**
+     * file => directory that holds file's entries for the current content. It's a subdirectory (keyed by content)
+     * of directory that holds entries for file path (keyed by version, language and path)
+     */
+    private final Map<File, Path> locations = new HashMap<>();
+
+    private int hits;
+    private int misses;
+
+    /**
+     * @param directory cache directory, created if does not exist
+     * @param version toolchain version, entries made by other versions are not used (see {@link #codeVersion(Class[])})
+     * @throws IOException
+     */
+    public ParseCache(File directory, String version) throws IOException {
+        this.directory = directory.toPath();
+        this.version = version;
+        Files.createDirectories(this.directory);
+    }
+
+    /**
+     * @param language language name
+     * @param file source file
+     * @return true if cache holds entries for the current content of the given file. Used to avoid parsing ahead
+     * files that are likely to be replayed
+     */
+    boolean contains(String language, File file) {
+        Path location = location(language, file);
+        return location != null && Files.isDirectory(location);
+    }
+
+    /**
+     * @param language language name
+     * @param file source file
+     * @param state digest of state file's walk may observe, see {@link #snapshot(MessageDigest)}
+     * @return cached entry or null
+     */
+    Entry get(String language, File file, String state) {
+        Path location = location(language, file);
+        if (location == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(location.resolve(state))))) {
+            return read(in);
+        } catch (NoSuchFileException e) {
+            // miss
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read cache entry for {}", file, e);
+        }
+        return null;
+    }
+
+    /**
+     * Finds entry made for the current content of a given file for any state
+     * @param language language name
+     * @param file source file
+     * @param matches tells if entry may be used in the current state
+     * @return the most recent matching entry or null
+     */
+    Entry find(String language, File file, Predicate<Entry> matches) {
+        Path location = location(language, file);
+        if (location == null || !Files.isDirectory(location)) {
+            return null;
+        }
+        List<Path> candidates;
+        try (Stream<Path> list = Files.list(location)) {
+            candidates = list.filter(path -> !path.getFileName().toString().endsWith(".tmp")).
+                    sorted(Comparator.comparing((Path path) -> path.toFile().lastModified()).reversed()).
+                    limit(MAX_CANDIDATES).
+                    collect(Collectors.toList());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to list cache entries for {}", file, e);
+            return null;
+        }
+        for (Path candidate : candidates) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(candidate)))) {
+                Entry entry = read(in);
+                if (matches.test(entry)) {
+                    return entry;
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read cache entry for {}", file, e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores cache entry
+     * @param language language name
+     * @param file source file
+     * @param state digest of state file's walk observed, see {@link #snapshot(MessageDigest)}
+     * @param entry entry to store
+     */
+    void put(String language, File file, String state, Entry entry) {
+        Path location = location(language, file);
+        if (location == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(location);
+            Path tmp = Files.createTempFile(location, state, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                write(entry, out);
+            }
+            Files.move(tmp, location.resolve(state), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to store cache entry for {}", file, e);
+            return;
+        }
+        try {
+            prune(location, MAX_ENTRIES);
+            prune(location.getParent(), MAX_CONTENTS);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to prune cache entries for {}", file, e);
+        }
+    }
+
+    /**
+     * @return number of files replayed from cache
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of files not found in cache
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Counts file replayed from cache
+     */
+    void hit() {
+        hits++;
+    }
+
+    /**
+     * Counts file that was parsed
+     */
+    void miss() {
+        misses++;
+    }
+
+    /**
+     * Computes toolchain version from the code itself, so entries made by other builds, including uncommitted ones,
+     * are not replayed
+     * @param classes classes whose code locations (jar files or class directories) make the toolchain
+     * @return digest of code found in locations of the given classes
+     * @throws IOException
+     */
+    public static String codeVersion(Class<?>... classes) throws IOException {
+        MessageDigest digest = newDigest();
+        for (Class<?> c : classes) {
+            update(digest, codeVersion(c));
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * @return digest of code found in location of the given class
+     */
+    private static String codeVersion(Class<?> c) throws IOException {
+        CodeSource source = c.getProtectionDomain().getCodeSource();
+        URL url = source == null ? null : source.getLocation();
+        if (url == null) {
+            throw new IOException("Unable to locate code of " + c.getName());
+        }
+        Path location;
+        try {
+            location = new File(url.toURI()).toPath();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Unable to locate code of " + c.getName(), e);
+        }
+        String key = location.toString();
+        String ret = CODE_VERSIONS.get(key);
+        if (ret != null) {
+            return ret;
+        }
+        MessageDigest digest = newDigest();
+        if (Files.isDirectory(location)) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(location)) {
+                files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                update(digest, location.relativize(file).toString());
+                digest.update(Files.readAllBytes(file));
+            }
+        } else {
+            digest.update(Files.readAllBytes(location));
+        }
+        ret = hex(digest.digest());
+        CODE_VERSIONS.put(key, ret);
+        return ret;
+    }
+
+    /**
+     * @return new digest to track state with
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Updates digest with the given values
+     * @param digest digest to update
+     * @param values values, may contain nulls
+     */
+    static void update(MessageDigest digest, String... values) {
+        for (String value : values) {
+            if (value == null) {
+                digest.update((byte) 0);
+                continue;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            digest.update((byte) 1);
+            digest.update((byte) (bytes.length >>> 24));
+            digest.update((byte) (bytes.length >>> 16));
+            digest.update((byte) (bytes.length >>> 8));
+            digest.update((byte) bytes.length);
+            digest.update(bytes);
+        }
+        digest.update((byte) 2);
+    }
+
+    /**
+     * Chains digest of declarations with the given change
+     * @param digest digest to compute with
+     * @param previous previous value of chained digest, 0 if there is none
+     * @param values change, may contain nulls
+     * @return new value of chained digest
+     */
+    static long chain(MessageDigest digest, long previous, String... values) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            digest.update((byte) (previous >>> (i * Byte.SIZE)));
+        }
+        update(digest, values);
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    /**
+     * @param digest digest to take snapshot of, not modified
+     * @return current value of digest in hex form
+     */
+    static String snapshot(MessageDigest digest) {
+        try {
+            return hex(((MessageDigest) digest.clone()).digest());
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return directory that holds entries for the current content of the given file or null if file can't be read
+     */
+    private Path location(String language, File file) {
+        Path location = locations.get(file);
+        if (location == null && !locations.containsKey(file)) {
+            try {
+                MessageDigest digest = newDigest();
+                update(digest, String.valueOf(FORMAT), version, language, PathUtil.relativizeCwd(file.toPath()));
+                String key = hex(digest.digest());
+                MessageDigest content = newDigest();
+                content.update(Files.readAllBytes(file.toPath()));
+                location = directory.resolve(key.substring(0, 2)).resolve(key).resolve(hex(content.digest()));
+            } catch (IOException e) {
+                LOGGER.warn("Failed to compute cache key for {}", file, e);
+            }
+            locations.put(file, location);
+        }
+        return location;
+    }
+
+    /**
+     * Removes the oldest items of a given cache directory so that no more than given number of them remains
+     * @param directory directory to prune
+     * @param max maximum number of items to keep
+     */
+    private static void prune(Path directory, int max) throws IOException {
+        List<Path> items;
+        try (Stream<Path> list = Files.list(directory)) {
+            items = list.filter(path -> !path.getFileName().toString().endsWith(".tmp")).
+                    sorted(Comparator.comparing((Path path) -> path.toFile().lastModified()).reversed()).
+                    collect(Collectors.toList());
+        }
+        for (Path item : items.subList(Math.min(max, items.size()), items.size())) {
+            if (Files.isDirectory(item)) {
+                FileUtils.deleteDirectory(item.toFile());
+            } else {
+                Files.deleteIfExists(item);
+            }
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] ret = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            ret[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            ret[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(ret);
+    }
+
+    private static void write(Entry entry, DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT);
+        writeString(entry.checkpoint, out);
+        out.writeInt(entry.reads.size());
+        for (Map.Entry<String, Long> read : entry.reads.entrySet()) {
+            writeString(read.getKey(), out);
+            out.writeLong(read.getValue());
+        }
+        for (Object event : entry.events) {
+            if (event instanceof Def) {
+                out.writeByte(DEF);
+                GraphRecords.writeDef((Def) event, out);
+            } else if (event instanceof Ref) {
+                out.writeByte(REF);
+                GraphRecords.writeRef((Ref) event, out);
+            } else if (event instanceof String[]) {
+                String[] change = (String[]) event;
+                out.writeByte(CHANGE);
+                out.writeInt(change.length);
+                for (String s : change) {
+                    writeString(s, out);
+                }
+            } else {
+                out.writeByte(PROCESS);
+                writeString(((File) event).getPath(), out);
+            }
+        }
+        out.writeByte(END);
+    }
+
+    private static Entry read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT) {
+            throw new IOException("Unsupported cache entry format");
+        }
+        Entry entry = new Entry();
+        entry.checkpoint = readString(in);
+        for (int i = in.readInt(); i > 0; i--) {
+            entry.reads.put(readString(in), in.readLong());
+        }
+        while (true) {
+            int tag = in.readByte();
+            switch (tag) {
+                case END:
+                    return entry;
+                case DEF:
+                    entry.events.add(GraphRecords.readDef(in));
+                    break;
+                case REF:
+                    entry.events.add(GraphRecords.readRef(in));
+                    break;
+                case CHANGE:
+                    String[] change = new String[in.readInt()];
+                    for (int i = 0; i < change.length; i++) {
+                        change[i] = readString(in);
+                    }
+                    entry.events.add(change);
+                    break;
+                case PROCESS:
+                    entry.events.add(new File(readString(in)));
+                    break;
+                default:
+                    throw new IOException("Malformed cache entry");
+            }
+        }
+    }
+
+    /**
+     * Recorded walk of a single file. Holds definitions, references, symbol table changes (string arrays),
+     * and processed files in the order they were made, and declarations walk observed
+     */
+    static class Entry {
+
+        final List<Object> events = new ArrayList<>();
+
+        /**
+         * Digest of state (see {@link #snapshot(MessageDigest)}) walk started in, after files requested before walk
+         * were processed
+         */
+        String checkpoint;
+
+        /**
+         * Scope of declarations => digest of declarations made in scope before walk observed it,
+         * see {@link LanguageBase#observe(String, String)}
+         */
+        final Map<String, Long> reads = new LinkedHashMap<>();
+
+        /**
+         * @return files processed before any definition, reference, or symbol table change was made, in order
+         */
+        List<File> getDependencies() {
+            List<File> ret = new ArrayList<>();
+            for (Object event : events) {
+                if (!(event instanceof File)) {
+                    break;
+                }
+                ret.add((File) event);
+            }
+            return ret;
+        }
+    }
+}
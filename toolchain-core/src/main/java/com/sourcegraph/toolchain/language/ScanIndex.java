@@ -0,0 +1,211 @@
+package com.sourcegraph.toolchain.language;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.sourcegraph.toolchain.core.GraphRecords.readString;
+import static com.sourcegraph.toolchain.core.GraphRecords.writeString;
+
+/**
+ * Persistent index of directory listings made by {@link FileTreeWalk}, allows to reuse listings of directories that
+ * did not change since the previous scan instead of reading them again.
+ * Listing holds directory's subdirectories and files that match rules of collectors (in order directory stream
+ * returned them), and directory's modification time. Creating, deleting, or renaming directory entry changes
+ * directory's modification time, thus listing is reused only if modification time is the same. Each directory is
+ * still checked on every scan, since changes in subdirectory do not change modification time of its parent.
+ * Modification time may also be preserved or restored (for example by archivers or rsync), thus walk checks that
+ * entries of reused listing still exist and lists directory again if they do not.
+ * Listings are not reused if directory was modified shortly before the scan that listed it (it might change again
+ * within the same file system timestamp tick), if index was made for other root directory, or if collectors' rules
+ * changed. Index is rewritten after each scan and holds only directories visited by that scan, thus deleted and
+ * renamed directories are dropped.
+ * Thread-safe
+ */
+public class ScanIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScanIndex.class);
+
+    /**
+     * Index format version, bump when format changes
+     */
+    private static final int FORMAT = 1;
+
+    /**
+     * Directories modified less than this before scan started are not trusted
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private final Path file;
+
+    /**
+     * Listings made by the previous scan, by directory path relative to root
+     */
+    private Map<String, Listing> previous = new HashMap<>();
+
+    private long previousStart;
+
+    /**
+     * Listings made or reused by the current scan
+     */
+    private final Map<String, Listing> current = new ConcurrentHashMap<>();
+
+    private String root;
+
+    private String rules;
+
+    private long start;
+
+    /**
+     * @param file file to keep index in, index is empty if file does not exist
+     */
+    public ScanIndex(File file) {
+        this.file = file.toPath();
+    }
+
+    /**
+     * Starts new scan, loads listings of the previous one if they were made for the same root directory and rules
+     * @param root root directory
+     * @param rules description of rules files are matched with
+     */
+    synchronized void open(Path root, String rules) {
+        this.root = root.toAbsolutePath().normalize().toString();
+        this.rules = rules;
+        this.start = System.currentTimeMillis();
+        current.clear();
+        previous = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT ||
+                    !this.root.equals(readString(in)) ||
+                    !rules.equals(readString(in))) {
+                LOGGER.info("Scan index {} was made for other directory or rules, ignoring it", file);
+                return;
+            }
+            previousStart = in.readLong();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String dir = readString(in);
+                previous.put(dir, Listing.read(in));
+            }
+        } catch (NoSuchFileException e) {
+            // first scan
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read scan index {}", file, e);
+            previous = new HashMap<>();
+        }
+    }
+
+    /**
+     * @param dir directory path relative to root
+     * @param modified directory's modification time
+     * @return listing made by the previous scan if directory did not change since, null otherwise
+     */
+    Listing get(String dir, long modified) {
+        Listing listing = previous.get(dir);
+        if (listing == null || listing.modified != modified || modified >= previousStart - RACY_MILLIS) {
+            return null;
+        }
+        return listing;
+    }
+
+    /**
+     * Records directory listing made or reused by the current scan
+     * @param dir directory path relative to root
+     * @param listing directory listing
+     */
+    void put(String dir, Listing listing) {
+        current.put(dir, listing);
+    }
+
+    /**
+     * Writes listings of the current scan to index file
+     * @throws IOException
+     */
+    synchronized void save() throws IOException {
+        Path target = file.toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FORMAT);
+                writeString(root, out);
+                writeString(rules, out);
+                out.writeLong(start);
+                out.writeInt(current.size());
+                for (Map.Entry<String, Listing> entry : current.entrySet()) {
+                    writeString(entry.getKey(), out);
+                    entry.getValue().write(out);
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        LOGGER.info("Scan index: {} of {} directories reused", reused(), current.size());
+    }
+
+    /**
+     * @return number of listings current scan reused
+     */
+    private int reused() {
+        int ret = 0;
+        for (Map.Entry<String, Listing> entry : current.entrySet()) {
+            if (entry.getValue() == previous.get(entry.getKey())) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Subdirectories and matching files of a directory
+     */
+    static class Listing {
+
+        final long modified;
+
+        /**
+         * Entry names in order directory stream returned them
+         */
+        final String[] names;
+
+        /**
+         * Marks entries that are directories
+         */
+        final BitSet directories;
+
+        Listing(long modified, String[] names, BitSet directories) {
+            this.modified = modified;
+            this.names = names;
+            this.directories = directories;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(modified);
+            out.writeInt(names.length);
+            for (int i = 0; i < names.length; i++) {
+                writeString(names[i], out);
+                out.writeBoolean(directories.get(i));
+            }
+        }
+
+        static Listing read(DataInputStream in) throws IOException {
+            long modified = in.readLong();
+            String[] names = new String[in.readInt()];
+            BitSet directories = new BitSet(names.length);
+            for (int i = 0; i < names.length; i++) {
+                names[i] = readString(in);
+                directories.set(i, in.readBoolean());
+            }
+            return new Listing(modified, names, directories);
+        }
+    }
+}
@@ -35,11 +35,6 @@ public class Scope<E> {
      */
     private int counter;
 
-    /**
-     * Generates unique scope identifiers (e.g. for global scopes such as unnamed namespaces)
-     */
-    private static int uCounter;
-
 
     /**
      * Makes new scope with the given name
@@ -136,10 +131,12 @@ public class Scope<E> {
     }
 
     /**
+     * @param separator separator char
+     * @param uid unique identifier, for example generated by {@link LanguageBase#nextUniqueId()}
      * @return scope with unique id
      */
-    public Scope<E> uniq(char separator) {
-        String id = "*" + String.valueOf(++uCounter);
+    public Scope<E> uniq(char separator, int uid) {
+        String id = "*" + String.valueOf(uid);
         return new Scope<>(id, getPathTo(id, separator));
     }
 
@@ -2,12 +2,13 @@ package com.sourcegraph.toolchain.language;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Holds information about some object (or class, or whatever).
- * Information is split to general object description and key-value pairs - properties
+ * Information is split to general object description and key-value pairs - properties.
+ * Categories and properties are iterated in the order they were added
  * @param <K> general information's type (object description's type)
  * @param <V> property's type
  */
@@ -15,7 +16,7 @@ public class TypeInfo<K, V> {
 
     private K data;
 
-    private Map<String, Map<String, V>> props = new HashMap<>();
+    private Map<String, Map<String, V>> props = new LinkedHashMap<>();
 
     /**
      * Puts pair name-value to given category. Category might be "functions", "variables", etc
@@ -27,7 +28,7 @@ public class TypeInfo<K, V> {
     public void setProperty(String category, String name, V data) {
         Map<String, V> categoryProps = props.get(category);
         if (categoryProps == null) {
-            categoryProps = new HashMap<>();
+            categoryProps = new LinkedHashMap<>();
             props.put(category, categoryProps);
         }
         categoryProps.put(name, data);
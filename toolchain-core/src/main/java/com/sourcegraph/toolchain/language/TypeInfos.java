@@ -64,10 +64,17 @@ public class TypeInfos<K, V> {
         safeGet(typeName).setProperty(category, propertyName, value);
     }
 
+    /**
+     * @return new empty type info, subclasses may provide type infos that index their properties
+     */
+    protected TypeInfo<K, V> newTypeInfo() {
+        return new TypeInfo<>();
+    }
+
     private TypeInfo<K, V> safeGet(String name) {
         TypeInfo<K, V> ret = infos.get(name);
         if (ret == null) {
-            ret = new TypeInfo<>();
+            ret = newTypeInfo();
             infos.put(name, ret);
         }
         return ret;
@@ -21,8 +21,6 @@ class CPPParseTreeListener extends CPP14BaseListener {
 
     private static final String UNKNOWN = "?";
 
-    private static final String BASE_CLASS = "baseClass";
-
     private LanguageImpl support;
 
     private Context<ObjectInfo> context = new Context<>();
@@ -35,8 +33,6 @@ class CPPParseTreeListener extends CPP14BaseListener {
 
     private NamespaceContext namespaceContext = new NamespaceContext();
 
-    private static int idCounter;
-
     CPPParseTreeListener(LanguageImpl support) {
         this.support = support;
     }
@@ -69,7 +65,7 @@ class CPPParseTreeListener extends CPP14BaseListener {
 
     @Override
     public void enterUnnamednamespacedefinition(UnnamednamespacedefinitionContext ctx) {
-        Scope<ObjectInfo> uniq = context.currentScope().uniq(PATH_SEPARATOR);
+        Scope<ObjectInfo> uniq = context.currentScope().uniq(PATH_SEPARATOR, support.nextUniqueId());
         context.enterScope(uniq);
         namespaceContext.enter(uniq.getName());
         // cut trailing PATH_SEPARATOR
@@ -95,7 +91,14 @@ class CPPParseTreeListener extends CPP14BaseListener {
         NSPath nsPath = new NSPath(classheadnameCtx);
         String className = namespaceContext.resolve(nsPath);
 
-        Scope<ObjectInfo> scope = new Scope<>(className);
+        BaseclauseContext base = head.baseclause();
+        Scope<ObjectInfo> scope;
+        if (base == null) {
+            scope = new Scope<>(className);
+        } else {
+            // class body sees inherited variables
+            scope = new ClassScope(className, StringUtils.EMPTY, support.infos, className, false);
+        }
 
         String kind = head.classkey().getText();
         Def def = support.def(nsPath.localCtx.getSymbol(), kind);
@@ -104,11 +107,10 @@ class CPPParseTreeListener extends CPP14BaseListener {
         def.defData.setName(formatClassName(className));
         support.emit(def);
 
-        BaseclauseContext base = head.baseclause();
         support.infos.setData(className, scope);
 
         if (base != null) {
-            processBaseClasses(base.basespecifierlist(), className, scope);
+            processBaseClasses(base.basespecifierlist(), className);
         }
 
         context.enterScope(scope);
@@ -198,7 +200,7 @@ class CPPParseTreeListener extends CPP14BaseListener {
         String functionName = nsPath.local;
         if (functionName == null) {
             // TODO: operators
-            functionName = "**" + ++idCounter;
+            functionName = "**" + support.nextFunctionId();
         } else {
             if (ident != null && ident.getText().indexOf('~') >= 0) {
                 // destructor
@@ -208,7 +210,7 @@ class CPPParseTreeListener extends CPP14BaseListener {
         String functionPath = functionName + '(' + params.getSignature() + ')';
 
         // is it a ref or def?
-        ObjectInfo info = support.infos.getProperty(className, DefKind.FUNCTION, functionPath);
+        ObjectInfo info = support.infos.getMember(className, DefKind.FUNCTION, functionPath);
         if (info != null) {
             // ref
             // TODO: overloading
@@ -227,7 +229,7 @@ class CPPParseTreeListener extends CPP14BaseListener {
 
                 // special handling of global main()
                 if (StringUtils.isEmpty(className) && "main".equals(functionName)) {
-                    functionPath = context.currentScope().uniq(PATH_SEPARATOR).getName() + PATH_SEPARATOR + functionPath;
+                    functionPath = context.currentScope().uniq(PATH_SEPARATOR, support.nextUniqueId()).getName() + PATH_SEPARATOR + functionPath;
                 }
 
                 Def methodDef = support.def(nsPath.localCtx.getSymbol(), DefKind.FUNCTION);
@@ -243,13 +245,19 @@ class CPPParseTreeListener extends CPP14BaseListener {
             }
         }
 
-        Scope<ObjectInfo> functionScope = new Scope<>(functionPath, getPath(className, StringUtils.EMPTY));
-        context.enterScope(functionScope);
-        classes.push(className);
-
+        Scope<ObjectInfo> functionScope;
         if (info != null && !StringUtils.isEmpty(className)) {
-            inheritScope(functionScope, className, new HashSet<>());
+            // body of method defined outside of class sees all the class variables
+            functionScope = new ClassScope(functionPath,
+                    getPath(className, StringUtils.EMPTY),
+                    support.infos,
+                    className,
+                    true);
+        } else {
+            functionScope = new Scope<>(functionPath, getPath(className, StringUtils.EMPTY));
         }
+        context.enterScope(functionScope);
+        classes.push(className);
 
         for (FunctionParameter param : params.params) {
             param.def.defKey = new DefKey(null, context.currentScope().getPathTo(param.def.name, PATH_SEPARATOR));
@@ -294,7 +302,7 @@ class CPPParseTreeListener extends CPP14BaseListener {
         if (lookup == null) {
             NSPath nsTypePath = nsPath.parent();
             String className = namespaceContext.resolve(nsTypePath);
-            ObjectInfo oInfo = support.infos.getProperty(className, DefKind.VARIABLE, nsPath.local);
+            ObjectInfo oInfo = support.infos.getMember(className, DefKind.VARIABLE, nsPath.local);
             if (oInfo != null) {
                 // foo::bar
                 type = oInfo.getType();
@@ -368,7 +376,7 @@ class CPPParseTreeListener extends CPP14BaseListener {
         }
 
         String varOrPropName = ident.getText();
-        ObjectInfo info = props.getProperty(DefKind.VARIABLE, varOrPropName);
+        ObjectInfo info = support.infos.getMember(props, DefKind.VARIABLE, varOrPropName);
         String type;
         if (info == null) {
             type = UNKNOWN;
@@ -610,7 +618,7 @@ class CPPParseTreeListener extends CPP14BaseListener {
     /**
      * Emits base classes in "class foo: bar"
      */
-    private void processBaseClasses(BasespecifierlistContext classes, String path, Scope<ObjectInfo> scope) {
+    private void processBaseClasses(BasespecifierlistContext classes, String path) {
         if (classes == null) {
             return;
         }
@@ -625,50 +633,9 @@ class CPPParseTreeListener extends CPP14BaseListener {
         typeRef.defKey = new DefKey(null, name);
         support.emit(typeRef);
 
-        TypeInfo<Scope, ObjectInfo> typeInfo = support.infos.get(path);
-        typeInfo.setProperty(BASE_CLASS, name, null);
-        inheritScope(scope, name, new HashSet<>());
-        processBaseClasses(classes.basespecifierlist(), path, scope);
-    }
-
-    /**
-     * Copies properties from parent type to given scope.
-     * class A : B => class A should have all B's properties
-     */
-    private void inheritScope(Scope<ObjectInfo> scope, String parentType, Set<String> visited) {
-        if (!visited.add(parentType)) {
-            return;
-        }
-        TypeInfo<Scope, ObjectInfo> baseInfo = support.infos.get(parentType);
-        if (baseInfo != null) {
-            Collection<String> baseClasses = baseInfo.getProperties(BASE_CLASS);
-            for (String baseClass : baseClasses) {
-                inheritScope(scope, baseClass, visited);
-            }
-            // copying base properties to current scope
-            for (String category : baseInfo.getCategories()) {
-                for (String property : baseInfo.getProperties(category)) {
-                    ObjectInfo info = baseInfo.getProperty(category, property);
-                    if (info == null) {
-                        support.infos.setProperty(scope.getPath(), category, property, null);
-                        continue;
-                    }
-                    // already inherited, should not override
-                    if (info.getPrefix() != null) {
-                        continue;
-                    }
-                    // inherited objects have different path
-                    Scope baseScope = baseInfo.getData();
-                    if (baseScope != null) {
-                        ObjectInfo inherited = new ObjectInfo(info.getType(), getPath(baseScope.getPath(), StringUtils.EMPTY));
-                        support.infos.setProperty(scope.getPath(), category, property, inherited);
-                        if (category == DefKind.VARIABLE) {
-                            scope.put(property, inherited);
-                        }
-                    }
-                }
-            }
-        }
+        support.infos.setProperty(path, CPPTypeInfos.BASE_CLASS, name, null);
+        support.infos.inherit(path, name);
+        processBaseClasses(classes.basespecifierlist(), path);
     }
 
     /**
@@ -898,7 +865,7 @@ class CPPParseTreeListener extends CPP14BaseListener {
                     typeRef.defKey = new DefKey(null, className);
                     support.emit(typeRef);
 
-                    ObjectInfo memberInfo = typeInfo.getProperty(DefKind.VARIABLE, nsPath.local);
+                    ObjectInfo memberInfo = support.infos.getMember(typeInfo, DefKind.VARIABLE, nsPath.local);
                     if (memberInfo != null) {
                         Ref memberRef = support.ref(nsPath.localCtx.getSymbol());
                         memberRef.defKey = new DefKey(null, getPath(memberInfo, typeInfo.getData(), nsPath.local));
@@ -1460,24 +1427,11 @@ class CPPParseTreeListener extends CPP14BaseListener {
     /**
      * @param info      type info
      * @param signature function signature
-     * @return function lookup result
+     * @return function lookup result: function with a given signature or, if there is none, all the functions
+     * with the same name, including inherited ones
      */
     private FunctionLookupResult lookupFunction(TypeInfo<Scope, ObjectInfo> info, String signature) {
-        int pos = signature.indexOf('(');
-        String prefix = signature.substring(0, pos);
-        FunctionLookupResult ret = new FunctionLookupResult();
-        for (String candidate : info.getProperties(DefKind.FUNCTION)) {
-            if (candidate.equals(signature)) {
-                ObjectInfo obj = info.getProperty(DefKind.FUNCTION, candidate);
-                ret.exact = new Function(candidate, obj.getType(), obj.getPrefix());
-                return ret;
-            }
-            if (candidate.startsWith(prefix)) {
-                ObjectInfo obj = info.getProperty(DefKind.FUNCTION, candidate);
-                ret.candidates.add(new Function(candidate, obj.getType(), obj.getPrefix()));
-            }
-        }
-        return ret;
+        return support.infos.lookupFunction(info, signature);
     }
 
     /**
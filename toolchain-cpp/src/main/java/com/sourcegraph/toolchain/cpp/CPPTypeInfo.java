@@ -0,0 +1,150 @@
+package com.sourcegraph.toolchain.cpp;
+
+import com.sourcegraph.toolchain.language.ObjectInfo;
+import com.sourcegraph.toolchain.language.Scope;
+import com.sourcegraph.toolchain.language.TypeInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Type info that indexes functions by name. Function properties are named foo(_,_) (see {@link Function}), thus
+ * exact signature is found by property name and overloads are found by function name, without looking at all
+ * the functions of type.
+ * Also counts changes made to type info, so that derived classes do not see members added to class after they
+ * inherited it (see {@link CPPTypeInfos}). Revisions of added properties are kept only once class has become a base
+ * class of some other one, values are not versioned
+ */
+class CPPTypeInfo extends TypeInfo<Scope, ObjectInfo> {
+
+    /**
+     * Function name => names of function properties (signatures) with that name, in the order they were added
+     */
+    private final Map<String, List<String>> overloads = new HashMap<>();
+
+    /**
+     * Number of changes (properties and data set) made to type info so far
+     */
+    private int revision;
+
+    /**
+     * Revision data was first set in, 0 if it was never set
+     */
+    private int dataRevision;
+
+    /**
+     * Category => property name => revision property was added in, for properties added after class had become
+     * a base class. Null until then
+     */
+    private Map<String, Map<String, Integer>> added;
+
+    /**
+     * Classes members are inherited from (see {@link CPPTypeInfos#inherit(String, String)}), null if class has no
+     * base classes
+     */
+    Inheritance inheritance;
+
+    @Override
+    public void setProperty(String category, String name, ObjectInfo data) {
+        revision++;
+        if (!getProperties(category).contains(name)) {
+            if (DefKind.FUNCTION.equals(category)) {
+                overloads.computeIfAbsent(getFunctionName(name), key -> new ArrayList<>(1)).add(name);
+            }
+            if (added != null) {
+                added.computeIfAbsent(category, key -> new HashMap<>()).put(name, revision);
+            }
+        }
+        super.setProperty(category, name, data);
+    }
+
+    @Override
+    public TypeInfo<Scope, ObjectInfo> setData(Scope data) {
+        revision++;
+        if (dataRevision == 0 && data != null) {
+            dataRevision = revision;
+        }
+        return super.setData(data);
+    }
+
+    /**
+     * @return number of changes made to type info so far
+     */
+    int getRevision() {
+        return revision;
+    }
+
+    /**
+     * Marks class as a base class of some other one, properties added from now on are not visible in
+     * earlier revisions
+     */
+    void markBase() {
+        if (added == null) {
+            added = new HashMap<>();
+        }
+    }
+
+    /**
+     * @param category property category
+     * @param name     property name
+     * @param revision type info revision
+     * @return property value if property was added in a given revision or before, null otherwise
+     */
+    ObjectInfo getProperty(String category, String name, int revision) {
+        ObjectInfo ret = getProperty(category, name);
+        if (ret == null || added == null) {
+            return ret;
+        }
+        Map<String, Integer> properties = added.get(category);
+        Integer since = properties == null ? null : properties.get(name);
+        return since == null || since <= revision ? ret : null;
+    }
+
+    /**
+     * @param revision type info revision
+     * @return data if it was set in a given revision or before, null otherwise
+     */
+    Scope getData(int revision) {
+        return dataRevision == 0 || dataRevision > revision ? null : getData();
+    }
+
+    /**
+     * @param signature function signature, for example foo(_,_)
+     * @return function lookup result: function with a given signature or, if there is none, all the functions
+     * with the same name
+     */
+    FunctionLookupResult lookupFunction(String signature) {
+        FunctionLookupResult ret = new FunctionLookupResult();
+        ObjectInfo obj = getProperty(DefKind.FUNCTION, signature);
+        if (obj != null) {
+            ret.exact = new Function(signature, obj.getType(), obj.getPrefix());
+            return ret;
+        }
+        for (String candidate : getOverloads(signature)) {
+            obj = getProperty(DefKind.FUNCTION, candidate);
+            ret.candidates.add(new Function(candidate, obj.getType(), obj.getPrefix()));
+        }
+        return ret;
+    }
+
+    /**
+     * @param signature function signature, for example foo(_,_)
+     * @return signatures of functions with the same name in the order they were added
+     */
+    List<String> getOverloads(String signature) {
+        List<String> ret = overloads.get(getFunctionName(signature));
+        return ret == null ? Collections.emptyList() : ret;
+    }
+
+    /**
+     * @param signature function signature, for example foo(_,_)
+     * @return function name, for example foo
+     */
+    static String getFunctionName(String signature) {
+        int pos = signature.indexOf('(');
+        return pos < 0 ? signature : signature.substring(0, pos);
+    }
+}
@@ -0,0 +1,227 @@
+package com.sourcegraph.toolchain.cpp;
+
+import com.sourcegraph.toolchain.language.ObjectInfo;
+import com.sourcegraph.toolchain.language.Scope;
+import com.sourcegraph.toolchain.language.TypeInfo;
+import com.sourcegraph.toolchain.language.TypeInfos;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * C++ type infos. Members class inherits are not copied to class, they are looked up in base classes when needed.
+ * When class gets a base class, base class and its bases are visited in the order their members used to be copied
+ * in: bases of class (in the order of its base class properties) before class itself, every class once. Class keeps
+ * visited classes with revisions of their type infos (see {@link Inheritance}), thus it does not see members added
+ * to its bases after that moment: member of the last visited class that has it wins. Names of base classes are still copied to class,
+ * so that classes derived from it visit bases of its bases as well
+ */
+class CPPTypeInfos extends TypeInfos<Scope, ObjectInfo> {
+
+    /**
+     * Category of class properties that name base classes
+     */
+    static final String BASE_CLASS = "baseClass";
+
+    /**
+     * Memoized result of lookup that found nothing
+     */
+    private static final ObjectInfo NONE = new ObjectInfo(null);
+
+    @Override
+    protected TypeInfo<Scope, ObjectInfo> newTypeInfo() {
+        return new CPPTypeInfo();
+    }
+
+    /**
+     * Makes class inherit members of a base class and of its bases as they are now. Called after base class
+     * property is set
+     *
+     * @param typeName class name
+     * @param baseName base class name
+     */
+    void inherit(String typeName, String baseName) {
+        Inheritance visited = new Inheritance();
+        visit(baseName, new HashSet<>(), visited);
+        for (int i = 0; i < visited.types.size(); i++) {
+            String name = visited.types.get(i);
+            for (String base : new ArrayList<>(super.get(name).getProperties(BASE_CLASS))) {
+                setProperty(typeName, BASE_CLASS, base, null);
+            }
+            addInherited(typeName, name, visited.revisions.get(i));
+        }
+    }
+
+    /**
+     * Adds class to the ones given class inherits members from. Subclasses that record changes of type infos
+     * should record this one as well
+     *
+     * @param typeName class name
+     * @param baseName name of class members are inherited from
+     * @param revision revision of base class type info members are taken from
+     */
+    protected void addInherited(String typeName, String baseName, int revision) {
+        CPPTypeInfo type = (CPPTypeInfo) super.get(typeName);
+        if (type.inheritance == null) {
+            type.inheritance = new Inheritance();
+        }
+        type.inheritance.add(baseName, revision);
+        ((CPPTypeInfo) super.get(baseName)).markBase();
+    }
+
+    /**
+     * @param typeName class name
+     * @return classes body of class method defined outside of class inherits members from: bases of class followed
+     * by class itself, as they are now
+     */
+    Inheritance getMethodInheritance(String typeName) {
+        Inheritance ret = new Inheritance();
+        visit(typeName, new HashSet<>(), ret);
+        return ret;
+    }
+
+    /**
+     * @param typeName class name
+     * @param category member category
+     * @param name     member name
+     * @return class's own member or, if there is none, inherited one (see {@link #getInherited})
+     */
+    ObjectInfo getMember(String typeName, String category, String name) {
+        ObjectInfo ret = getProperty(typeName, category, name);
+        return ret == null ? getInherited(get(typeName), category, name) : ret;
+    }
+
+    /**
+     * @param info     class
+     * @param category member category
+     * @param name     member name
+     * @return class's own member or, if there is none, inherited one (see {@link #getInherited})
+     */
+    ObjectInfo getMember(TypeInfo<Scope, ObjectInfo> info, String category, String name) {
+        ObjectInfo ret = info.getProperty(category, name);
+        return ret == null ? getInherited(info, category, name) : ret;
+    }
+
+    /**
+     * @param info     class
+     * @param category member category
+     * @param name     member name
+     * @return member class inherits from its base classes, with prefix of base class that declares it, or null
+     */
+    ObjectInfo getInherited(TypeInfo<Scope, ObjectInfo> info, String category, String name) {
+        Inheritance inheritance = ((CPPTypeInfo) info).inheritance;
+        return inheritance == null ? null : getInherited(inheritance, category, name);
+    }
+
+    /**
+     * @param inheritance classes to look member up in
+     * @param category    member category
+     * @param name        member name
+     * @return member of the last class that has it, with prefix of that class, or null
+     */
+    ObjectInfo getInherited(Inheritance inheritance, String category, String name) {
+        for (String type : inheritance.types) {
+            readMemoized(type);
+        }
+        Map<String, ObjectInfo> members = inheritance.members.computeIfAbsent(category, key -> new HashMap<>());
+        ObjectInfo ret = members.get(name);
+        if (ret == null) {
+            ret = NONE;
+            for (int i = inheritance.types.size() - 1; i >= 0; i--) {
+                CPPTypeInfo base = (CPPTypeInfo) super.get(inheritance.types.get(i));
+                int revision = inheritance.revisions.get(i);
+                ObjectInfo member = qualify(base.getData(revision), base.getProperty(category, name, revision));
+                if (member != null) {
+                    ret = member;
+                    break;
+                }
+            }
+            members.put(name, ret);
+        }
+        return ret == NONE ? null : ret;
+    }
+
+    /**
+     * @param info      class
+     * @param signature function signature, for example foo(_,_)
+     * @return function lookup result (see {@link CPPTypeInfo#lookupFunction(String)}) that takes into account
+     * functions inherited from base classes
+     */
+    FunctionLookupResult lookupFunction(TypeInfo<Scope, ObjectInfo> info, String signature) {
+        CPPTypeInfo type = (CPPTypeInfo) info;
+        Inheritance inheritance = type.inheritance;
+        if (inheritance == null) {
+            return type.lookupFunction(signature);
+        }
+        FunctionLookupResult ret = new FunctionLookupResult();
+        ObjectInfo obj = getMember(type, DefKind.FUNCTION, signature);
+        if (obj != null) {
+            ret.exact = new Function(signature, obj.getType(), obj.getPrefix());
+            return ret;
+        }
+        // inherited functions go first in the order classes are inherited, class's own ones override them
+        Map<String, ObjectInfo> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < inheritance.types.size(); i++) {
+            CPPTypeInfo base = (CPPTypeInfo) super.get(inheritance.types.get(i));
+            int revision = inheritance.revisions.get(i);
+            Scope data = base.getData(revision);
+            for (String candidate : base.getOverloads(signature)) {
+                ObjectInfo member = qualify(data, base.getProperty(DefKind.FUNCTION, candidate, revision));
+                if (member != null) {
+                    candidates.put(candidate, member);
+                }
+            }
+        }
+        for (String candidate : type.getOverloads(signature)) {
+            candidates.put(candidate, type.getProperty(DefKind.FUNCTION, candidate));
+        }
+        for (Map.Entry<String, ObjectInfo> candidate : candidates.entrySet()) {
+            obj = candidate.getValue();
+            ret.candidates.add(new Function(candidate.getKey(), obj.getType(), obj.getPrefix()));
+        }
+        return ret;
+    }
+
+    /**
+     * Called for every class inheritance consists of when members are looked up in it instead of reading classes
+     * with {@link #get(String)}. Subclasses that track reads of type infos should track these ones as well
+     *
+     * @param name class name
+     */
+    protected void readMemoized(String name) {
+    }
+
+    /**
+     * Adds bases of a given class (as they are listed in its base class properties) and then class itself to
+     * inheritance, skipping visited classes
+     */
+    private void visit(String name, Set<String> visited, Inheritance inheritance) {
+        if (!visited.add(name)) {
+            return;
+        }
+        CPPTypeInfo type = (CPPTypeInfo) get(name);
+        if (type == null) {
+            return;
+        }
+        for (String base : new ArrayList<>(type.getProperties(BASE_CLASS))) {
+            visit(base, visited, inheritance);
+        }
+        inheritance.add(name, type.getRevision());
+    }
+
+    /**
+     * @return member with prefix of class that declares it or null if member is inherited one, or class has no scope
+     */
+    private static ObjectInfo qualify(Scope data, ObjectInfo member) {
+        if (member == null || member.getPrefix() != null || data == null) {
+            return null;
+        }
+        String path = data.getPath();
+        return new ObjectInfo(member.getType(),
+                path.isEmpty() ? path : path + CPPParseTreeListener.PATH_SEPARATOR);
+    }
+}
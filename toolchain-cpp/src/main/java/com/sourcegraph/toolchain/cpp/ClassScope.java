@@ -0,0 +1,59 @@
+package com.sourcegraph.toolchain.cpp;
+
+import com.sourcegraph.toolchain.language.ObjectInfo;
+import com.sourcegraph.toolchain.language.Scope;
+import com.sourcegraph.toolchain.language.TypeInfo;
+
+/**
+ * Scope that sees variables of class besides its own items: the ones class inherits (class body) or all of them
+ * as they are when method is defined (body of method defined outside of class). Variables are looked up in type
+ * infos when scope has no item with a given name
+ */
+class ClassScope extends Scope<ObjectInfo> {
+
+    private final CPPTypeInfos infos;
+
+    private final String typeName;
+
+    /**
+     * Class type info, obtained when scope is looked up in for the first time
+     */
+    private TypeInfo<Scope, ObjectInfo> type;
+
+    /**
+     * Classes body of method defined outside of class inherits variables from, null for class body
+     */
+    private final Inheritance inheritance;
+
+    /**
+     * @param name      scope name
+     * @param prefix    scope prefix
+     * @param infos     type infos
+     * @param typeName  class name
+     * @param qualified true if scope sees all the class variables, false if only inherited ones
+     */
+    ClassScope(String name, String prefix, CPPTypeInfos infos, String typeName, boolean qualified) {
+        super(name, prefix);
+        this.infos = infos;
+        this.typeName = typeName;
+        this.inheritance = qualified ? infos.getMethodInheritance(typeName) : null;
+    }
+
+    @Override
+    public ObjectInfo get(String name) {
+        ObjectInfo ret = super.get(name);
+        if (ret != null) {
+            return ret;
+        }
+        if (inheritance != null) {
+            return infos.getInherited(inheritance, DefKind.VARIABLE, name);
+        }
+        if (type == null) {
+            type = infos.get(typeName);
+            if (type == null) {
+                return null;
+            }
+        }
+        return infos.getInherited(type, DefKind.VARIABLE, name);
+    }
+}
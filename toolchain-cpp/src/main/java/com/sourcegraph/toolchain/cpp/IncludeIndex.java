@@ -0,0 +1,138 @@
+package com.sourcegraph.toolchain.cpp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves "#include" paths to source files of the unit. Files are indexed by their path components in reverse
+ * order (file name first), thus finding files whose path ends with include path takes one step per component
+ * of include path regardless of the number of files.
+ * When several files match, file located in the first include directory that has it wins, otherwise the first
+ * matching file in the order files were indexed in.
+ * Index is built once and is read-only afterwards, so it may be used by several threads
+ */
+class IncludeIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IncludeIndex.class);
+
+    private final Node root = new Node();
+
+    private final List<Path> includeDirs = new ArrayList<>();
+
+    /**
+     * @param files files to index
+     * @param includeDirs directories to look for ambiguous includes in, relative to the same directory file paths
+     * are relative to
+     */
+    IncludeIndex(Collection<File> files, Collection<String> includeDirs) {
+        for (File file : files) {
+            add(file);
+        }
+        for (String dir : includeDirs) {
+            this.includeDirs.add(Paths.get(dir).normalize());
+        }
+    }
+
+    /**
+     * @param path include path
+     * @return file whose path ends with a given path (see {@link Path#endsWith(Path)}) or null if there is none
+     */
+    File resolve(String path) {
+        Path p = Paths.get(path);
+        Node node = find(p);
+        if (node == null) {
+            return null;
+        }
+        if (p.getRoot() != null) {
+            return node.exact;
+        }
+        if (node.count > 1) {
+            for (Path dir : includeDirs) {
+                Node candidate = find(dir.resolve(p).normalize());
+                if (candidate != null && candidate.exact != null) {
+                    return candidate.exact;
+                }
+            }
+            LOGGER.debug("Include {} matches {} files, using {}", path, node.count, node.first);
+        }
+        return node.first;
+    }
+
+    private void add(File file) {
+        Path path = file.toPath();
+        Node node = root;
+        for (int i = path.getNameCount() - 1; i >= 0; i--) {
+            node = node.child(path.getName(i).toString());
+            node.add(file);
+        }
+        Path fileRoot = path.getRoot();
+        if (fileRoot != null) {
+            node = node.child(fileRoot.toString());
+        }
+        node.exact = file;
+    }
+
+    /**
+     * @return node that matches all components of a given path (including root component) or null
+     */
+    private Node find(Path path) {
+        Node node = root;
+        for (int i = path.getNameCount() - 1; i >= 0 && node != null; i--) {
+            node = node.children == null ? null : node.children.get(path.getName(i).toString());
+        }
+        Path pathRoot = path.getRoot();
+        if (pathRoot != null && node != null) {
+            node = node.children == null ? null : node.children.get(pathRoot.toString());
+        }
+        return node;
+    }
+
+    /**
+     * Suffix of file paths
+     */
+    private static class Node {
+
+        /**
+         * Nodes of longer suffixes keyed by preceding path component, null if there are none
+         */
+        Map<String, Node> children;
+
+        /**
+         * The first indexed file that has this suffix
+         */
+        File first;
+
+        /**
+         * Number of indexed files that have this suffix
+         */
+        int count;
+
+        /**
+         * File whose whole path is this suffix
+         */
+        File exact;
+
+        Node child(String name) {
+            if (children == null) {
+                children = new HashMap<>(4);
+            }
+            return children.computeIfAbsent(name, key -> new Node());
+        }
+
+        void add(File file) {
+            if (first == null) {
+                first = file;
+            }
+            count++;
+        }
+    }
+}
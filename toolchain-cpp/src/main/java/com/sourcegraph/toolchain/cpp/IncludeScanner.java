@@ -0,0 +1,198 @@
+package com.sourcegraph.toolchain.cpp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds quoted "#include" directives without lexing source. Skips comments, string and character literals the way
+ * lexer does; every "#" outside of them starts directive that lasts till the end of line, multiline "#define" is
+ * skipped as lexer skips it.
+ * Constructs that cannot be told apart without lexing (raw strings, digit separators and prefixed character literals,
+ * "__attribute__" lexer handles specially), malformed literals, and backslashes outside of literals are left
+ * to the lexer
+ */
+final class IncludeScanner {
+
+    /**
+     * The same pattern lexer matches directives with
+     */
+    private static final Pattern INCLUDE = Pattern.compile("^#include\\s+\"([^\"]+?)\"");
+
+    private static final String SIMPLE_ESCAPES = "'\"?\\abfnrtv";
+
+    private IncludeScanner() {
+    }
+
+    /**
+     * @param text source text
+     * @return included paths in order or null if source should be lexed to find them
+     */
+    static List<String> scan(String text) {
+        if (text.contains("__attribute__")) {
+            return null;
+        }
+        List<String> includes = new ArrayList<>();
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '/':
+                    if (i + 1 < n && text.charAt(i + 1) == '/') {
+                        i = endOfLine(text, i);
+                    } else if (i + 1 < n && text.charAt(i + 1) == '*') {
+                        int end = text.indexOf("*/", i + 2);
+                        if (end < 0) {
+                            return null;
+                        }
+                        i = end + 2;
+                    } else {
+                        i++;
+                    }
+                    break;
+                case '"':
+                    if (i > 0 && text.charAt(i - 1) == 'R') {
+                        return null;
+                    }
+                    i = skipLiteral(text, i, '"');
+                    if (i < 0) {
+                        return null;
+                    }
+                    break;
+                case '\'':
+                    if (i > 0 && isIdentifierPart(text.charAt(i - 1))) {
+                        return null;
+                    }
+                    i = skipLiteral(text, i, '\'');
+                    if (i < 0) {
+                        return null;
+                    }
+                    break;
+                case '#':
+                    int end = endOfLine(text, i);
+                    if (text.startsWith("#include", i)) {
+                        Matcher m = INCLUDE.matcher(text.substring(i, end));
+                        if (m.matches()) {
+                            includes.add(m.group(1));
+                        }
+                        i = end;
+                    } else if (text.startsWith("#define", i) && text.charAt(end - 1) == '\\') {
+                        i = skipMultilineDefine(text, end);
+                    } else {
+                        i = end;
+                    }
+                    break;
+                case '\\':
+                    // failed universal character name makes lexer skip the next character
+                    return null;
+                default:
+                    i++;
+            }
+        }
+        return includes;
+    }
+
+    /**
+     * @return index of line end (CR or LF) or text length
+     */
+    private static int endOfLine(String text, int i) {
+        int n = text.length();
+        while (i < n && text.charAt(i) != '\r' && text.charAt(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Skips string or character literal
+     * @param i index of opening quote
+     * @return index after closing quote or -1 if literal is not the one lexer accepts
+     */
+    private static int skipLiteral(String text, int i, char quote) {
+        int n = text.length();
+        int start = ++i;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (c == quote) {
+                // character literal has at least one character
+                return quote == '\'' && i == start ? -1 : i + 1;
+            }
+            if (c == '\r' || c == '\n') {
+                return -1;
+            }
+            if (c == '\\') {
+                i = skipEscape(text, i);
+                if (i < 0) {
+                    return -1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param i index of backslash
+     * @return index after escape sequence's first characters (the rest are digits that cannot end literal)
+     * or -1 if escape sequence is not the one lexer accepts
+     */
+    private static int skipEscape(String text, int i) {
+        if (i + 1 >= text.length()) {
+            return -1;
+        }
+        char c = text.charAt(i + 1);
+        if (SIMPLE_ESCAPES.indexOf(c) >= 0 || (c >= '0' && c <= '7')) {
+            return i + 2;
+        }
+        switch (c) {
+            case 'x':
+                return hexDigits(text, i + 2, 1) ? i + 3 : -1;
+            case 'u':
+                return hexDigits(text, i + 2, 4) ? i + 6 : -1;
+            case 'U':
+                return hexDigits(text, i + 2, 8) ? i + 10 : -1;
+            default:
+                return -1;
+        }
+    }
+
+    private static boolean hexDigits(String text, int i, int count) {
+        if (i + count > text.length()) {
+            return false;
+        }
+        for (int j = i; j < i + count; j++) {
+            if (Character.digit(text.charAt(j), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Skips lines that continue "#define" the same way lexer does
+     * @param i index of line end after directive
+     * @return index lexer continues from
+     */
+    private static int skipMultilineDefine(String text, int i) {
+        int n = text.length();
+        boolean escaped = true;
+        while (i < n) {
+            char c = text.charAt(i++);
+            if (escaped) {
+                escaped = c == '\r' || c == '\n';
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '\r' || c == '\n') {
+                return i;
+            }
+        }
+        return i;
+    }
+}
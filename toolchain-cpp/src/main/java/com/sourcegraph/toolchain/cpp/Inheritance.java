@@ -0,0 +1,42 @@
+package com.sourcegraph.toolchain.cpp;
+
+import com.sourcegraph.toolchain.language.ObjectInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classes some class (or method body) inherits members from, in the order their members become visible (member of
+ * the last class that has it wins). Every class comes with revision of its type info (see
+ * {@link CPPTypeInfo#getRevision()}), members added to class after that revision are not visible. Also memoizes
+ * members resolved in these classes
+ */
+class Inheritance {
+
+    /**
+     * Class names, the same class may be listed more than once
+     */
+    final List<String> types = new ArrayList<>();
+
+    /**
+     * Revisions of classes' type infos
+     */
+    final List<Integer> revisions = new ArrayList<>();
+
+    /**
+     * Memoized members, category => member name => member or {@link CPPTypeInfos#NONE}
+     */
+    final Map<String, Map<String, ObjectInfo>> members = new HashMap<>();
+
+    /**
+     * @param type     class name
+     * @param revision revision of class's type info
+     */
+    void add(String type, int revision) {
+        types.add(type);
+        revisions.add(revision);
+        members.clear();
+    }
+}
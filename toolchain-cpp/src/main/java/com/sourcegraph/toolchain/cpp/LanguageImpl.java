@@ -5,20 +5,108 @@ import com.sourcegraph.toolchain.cpp.antlr4.CPP14Lexer;
 import com.sourcegraph.toolchain.cpp.antlr4.CPP14Parser;
 import com.sourcegraph.toolchain.language.*;
 import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.apache.commons.lang3.StringUtils;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LanguageImpl extends LanguageBase {
 
-    TypeInfos<Scope, ObjectInfo> infos = new TypeInfos<>();
+    /**
+     * Symbol table changes recorded for parse cache
+     */
+    private static final String TYPE = "type";
+    private static final String TYPE_DATA = "data";
+    private static final String TYPE_PROPERTY = "property";
+    private static final String TYPE_INHERITED = "inherited";
+    private static final String FUNCTION_ID = "fid";
+
+    /**
+     * Source unit data key of include directories (list of paths relative to the current working directory)
+     * used to choose between several files matching the same "#include"
+     */
+    private static final String INCLUDE_DIRS = "IncludeDirs";
+
+    /**
+     * Type infos that record changes and report reads for parse cache
+     */
+    CPPTypeInfos infos = new CPPTypeInfos() {
+
+        @Override
+        public TypeInfo<Scope, ObjectInfo> get(String name) {
+            observe(TYPE, name);
+            return super.get(name);
+        }
+
+        @Override
+        protected void readMemoized(String name) {
+            observe(TYPE, name);
+        }
+
+        @Override
+        public TypeInfo<Scope, ObjectInfo> getRoot() {
+            touch(StringUtils.EMPTY);
+            return super.getRoot();
+        }
+
+        @Override
+        public void setData(String name, Scope data) {
+            record(TYPE_DATA, name, data == null ? null : data.getName(), data == null ? null : data.getPrefix());
+            super.setData(name, data);
+        }
+
+        @Override
+        public ObjectInfo getProperty(String typeName, String category, String propertyName) {
+            touch(typeName);
+            return super.getProperty(typeName, category, propertyName);
+        }
+
+        @Override
+        public void setProperty(String typeName, String category, String propertyName, ObjectInfo value) {
+            if (value == null) {
+                record(TYPE_PROPERTY, typeName, category, propertyName);
+            } else {
+                record(TYPE_PROPERTY, typeName, category, propertyName, value.getType(), value.getPrefix());
+            }
+            super.setProperty(typeName, category, propertyName, value);
+        }
+
+        @Override
+        protected void addInherited(String typeName, String baseName, int revision) {
+            record(TYPE_INHERITED, typeName, baseName, Integer.toString(revision));
+            super.addInherited(typeName, baseName, revision);
+        }
+
+        /**
+         * Records implicit creation of type info
+         */
+        private void touch(String name) {
+            if (get(name) == null) {
+                record(TYPE, name);
+            }
+        }
+    };
+
+    /**
+     * Generates unique identifiers for unsupported functions (e.g. operators)
+     */
+    private AtomicInteger functionIds = new AtomicInteger();
+
+    /**
+     * Resolves "#include" directives to unit files, built when files to process are known
+     */
+    private IncludeIndex includes;
 
     @Override
-    protected void parse(File sourceFile) throws ParseException {
+    protected ParseTree parse(File sourceFile) throws ParseException {
         try {
             GrammarConfiguration configuration = LanguageBase.createGrammarConfiguration(this,
                     sourceFile,
@@ -26,15 +114,40 @@ public class LanguageImpl extends LanguageBase {
                     CPP14Parser.class,
                     new DefaultErrorListener(sourceFile));
             ((CPP14Lexer) configuration.lexer).setSupport(this);
-            ParseTree tree = ((CPP14Parser) configuration.parser).translationunit();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(new CPPParseTreeListener(this), tree);
+            return configuration.parse(((CPP14Parser) configuration.parser)::translationunit);
         } catch (Exception e) {
             throw new ParseException(e);
         }
 
     }
 
+    /**
+     * Requests files included by "#include" directives, so they are processed before including file is parsed.
+     * Lexer is run only if {@link IncludeScanner} cannot find directives without it (or if token limit applies,
+     * since parse stops requesting files when limit is exceeded)
+     */
+    @Override
+    protected void scanDependencies(File sourceFile) throws IOException {
+        CharStream stream = getCharStream(sourceFile);
+        if (getParseBudget().getMaxTokens() == 0) {
+            List<String> includes = IncludeScanner.scan(stream.getText(Interval.of(0, stream.size() - 1)));
+            if (includes != null) {
+                includes.forEach(this::include);
+                return;
+            }
+        }
+        CPP14Lexer lexer = new CPP14Lexer(stream);
+        lexer.removeErrorListeners();
+        lexer.setSupport(this);
+        scan(lexer);
+    }
+
+    @Override
+    protected void walk(File sourceFile, ParseTree tree) {
+        ParseTreeWalker walker = new ParseTreeWalker();
+        walker.walk(new CPPParseTreeListener(this), tree);
+    }
+
     @Override
     protected FileCollector getFileCollector(File rootDir, String repoUri) {
         // If found .m or .mm file - it's Objective-C
@@ -50,6 +163,11 @@ public class LanguageImpl extends LanguageBase {
         return "cpp";
     }
 
+    @Override
+    protected void prepareGraph() {
+        includes = new IncludeIndex(files, getIncludeDirs());
+    }
+
     @Override
     public DefKey resolve(DefKey source) {
         // TODO (alexsaveliev)
@@ -64,6 +182,68 @@ public class LanguageImpl extends LanguageBase {
         return super.getCharStream(sourceFile);
     }
 
+    /**
+     * @return next unique function identifier
+     */
+    int nextFunctionId() {
+        int id = functionIds.incrementAndGet();
+        record(FUNCTION_ID, String.valueOf(id));
+        return id;
+    }
+
+    @Override
+    protected boolean isParseCacheSupported() {
+        return true;
+    }
+
+    /**
+     * Type infos are read only through {@link TypeInfos#get(String)} (directly or by getting root or property),
+     * thus each type is a scope of its own
+     */
+    @Override
+    protected boolean isSummarySupported() {
+        return true;
+    }
+
+    @Override
+    protected String getScope(String[] change) {
+        switch (change[0]) {
+            case TYPE:
+            case TYPE_DATA:
+            case TYPE_PROPERTY:
+            case TYPE_INHERITED:
+                return scope(TYPE, change[1]);
+            default:
+                return super.getScope(change);
+        }
+    }
+
+    @Override
+    protected void replay(String[] change) {
+        switch (change[0]) {
+            case TYPE:
+                infos.getProperty(change[1], StringUtils.EMPTY, StringUtils.EMPTY);
+                break;
+            case TYPE_DATA:
+                infos.setData(change[1], change[2] == null ? null : new Scope<>(change[2], change[3]));
+                break;
+            case TYPE_PROPERTY:
+                infos.setProperty(change[1],
+                        change[2],
+                        change[3],
+                        change.length == 4 ? null : new ObjectInfo(change[4], change[5]));
+                break;
+            case TYPE_INHERITED:
+                infos.addInherited(change[1], change[2], Integer.parseInt(change[3]));
+                break;
+            case FUNCTION_ID:
+                functionIds.set(Integer.parseInt(change[1]));
+                break;
+            default:
+                super.replay(change);
+        }
+    }
+
     /**
      * Handles "#include "foo" directives, tries to resolve file in the current set
      *
@@ -71,12 +251,30 @@ public class LanguageImpl extends LanguageBase {
      */
     @SuppressWarnings("unused")
     public void include(String path) {
-        Path p = Paths.get(path);
-        for (File candidate : files) {
-            if (candidate.toPath().endsWith(p)) {
-                process(candidate);
-                break;
-            }
+        if (includes == null) {
+            return;
+        }
+        File file = includes.resolve(path);
+        if (file != null) {
+            process(file);
+        }
+    }
+
+    /**
+     * @return include directories configured in source unit data
+     */
+    private Collection<String> getIncludeDirs() {
+        Object value = unit == null || unit.Data == null ? null : unit.Data.get(INCLUDE_DIRS);
+        if (value instanceof String) {
+            return Collections.singletonList((String) value);
+        }
+        if (!(value instanceof Collection)) {
+            return Collections.emptyList();
+        }
+        List<String> dirs = new ArrayList<>();
+        for (Object dir : (Collection<?>) value) {
+            dirs.add(String.valueOf(dir));
         }
+        return dirs;
     }
 }
\ No newline at end of file
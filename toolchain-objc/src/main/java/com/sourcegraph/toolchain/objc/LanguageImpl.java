@@ -17,30 +17,81 @@ import java.util.Set;
 
 public class LanguageImpl extends LanguageBase {
 
-    Map<String, String> globalVars = new HashMap<>();
-    // class name -> (variable -> type)
+    /**
+     * Symbol table changes recorded for parse cache
+     */
+    private static final String GLOBAL_VAR = "global";
+    private static final String CLASS = "class";
+    private static final String INSTANCE_VAR = "ivar";
+    private static final String FUNCTION = "function";
+    private static final String TYPE = "type";
+
+    Map<String, String> globalVars = new HashMap<String, String>() {
+        @Override
+        public String put(String key, String value) {
+            record(GLOBAL_VAR, key, value);
+            return super.put(key, value);
+        }
+    };
+    // class name -> (variable -> type), use getInstanceVars() to register new class
     Map<String, Map<String, String>> instanceVars = new HashMap<>();
 
-    Set<String> functions = new HashSet<>();
-    Set<String> types = new HashSet<>();
+    Set<String> functions = new HashSet<String>() {
+        @Override
+        public boolean add(String s) {
+            record(FUNCTION, s);
+            return super.add(s);
+        }
+    };
+    Set<String> types = new HashSet<String>() {
+        @Override
+        public boolean add(String s) {
+            record(TYPE, s);
+            return super.add(s);
+        }
+    };
+
+    /**
+     * @param className class name
+     * @return instance variables of the given class (variable -> type), registers class if needed
+     */
+    Map<String, String> getInstanceVars(String className) {
+        Map<String, String> vars = instanceVars.get(className);
+        if (vars == null) {
+            record(CLASS, className);
+            vars = new HashMap<String, String>() {
+                @Override
+                public String put(String key, String value) {
+                    record(INSTANCE_VAR, className, key, value);
+                    return super.put(key, value);
+                }
+            };
+            instanceVars.put(className, vars);
+        }
+        return vars;
+    }
 
     @Override
-    protected void parse(File sourceFile) throws ParseException {
+    protected ParseTree parse(File sourceFile) throws ParseException {
         try {
             GrammarConfiguration configuration = LanguageBase.createGrammarConfiguration(this,
                     sourceFile,
                     ObjCLexer.class,
                     ObjCParser.class,
                     new DefaultErrorListener(sourceFile));
-            ParseTree tree = ((ObjCParser) configuration.parser).translation_unit();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(new ObjCParseTreeListener(this), tree);
+            return configuration.parse(((ObjCParser) configuration.parser)::translation_unit);
         } catch (Exception e) {
             throw new ParseException(e);
         }
 
     }
 
+    @Override
+    protected void walk(File sourceFile, ParseTree tree) {
+        ParseTreeWalker walker = new ParseTreeWalker();
+        walker.walk(new ObjCParseTreeListener(this), tree);
+    }
+
     @Override
     protected FileCollector getFileCollector(File rootDir, String repoUri) {
         return new ExtensionBasedFileCollector().extension(".h", ".m", ".mm");
@@ -73,4 +124,32 @@ public class LanguageImpl extends LanguageBase {
         // TODO (alexsaveliev)
         return null;
     }
+
+    @Override
+    protected boolean isParseCacheSupported() {
+        return true;
+    }
+
+    @Override
+    protected void replay(String[] change) {
+        switch (change[0]) {
+            case GLOBAL_VAR:
+                globalVars.put(change[1], change[2]);
+                break;
+            case CLASS:
+                getInstanceVars(change[1]);
+                break;
+            case INSTANCE_VAR:
+                getInstanceVars(change[1]).put(change[2], change[3]);
+                break;
+            case FUNCTION:
+                functions.add(change[1]);
+                break;
+            case TYPE:
+                types.add(change[1]);
+                break;
+            default:
+                super.replay(change);
+        }
+    }
 }
\ No newline at end of file
@@ -74,11 +74,7 @@ class ObjCParseTreeListener extends ObjCBaseListener {
         support.emit(interfaceRef);
 
         // registering "self" variable
-        Map<String, String> currentClassVars = support.instanceVars.get(currentClassName);
-        if (currentClassVars == null) {
-            currentClassVars = new HashMap<>();
-            support.instanceVars.put(currentClassName, currentClassVars);
-        }
+        Map<String, String> currentClassVars = support.getInstanceVars(currentClassName);
         currentClassVars.put("self", currentClassName);
     }
 
@@ -99,11 +95,7 @@ class ObjCParseTreeListener extends ObjCBaseListener {
         support.emit(interfaceRef);
 
         // registering "self" variable
-        Map<String, String> currentClassVars = support.instanceVars.get(currentClassName);
-        if (currentClassVars == null) {
-            currentClassVars = new HashMap<>();
-            support.instanceVars.put(currentClassName, currentClassVars);
-        }
+        Map<String, String> currentClassVars = support.getInstanceVars(currentClassName);
         currentClassVars.put("self", currentClassName);
     }
 
@@ -179,11 +171,7 @@ class ObjCParseTreeListener extends ObjCBaseListener {
                     }
                 } else {
                     if (currentMethodName == null) {
-                        vars = support.instanceVars.get(currentClassName);
-                        if (vars == null) {
-                            vars = new HashMap<>();
-                            support.instanceVars.put(currentClassName, vars);
-                        }
+                        vars = support.getInstanceVars(currentClassName);
                         defKey = currentDefKey(varDef.name);
                     } else {
                         Var var = new Var(varDef.name, typeName);
@@ -236,11 +224,7 @@ class ObjCParseTreeListener extends ObjCBaseListener {
                         }
                     } else {
                         if (currentMethodName == null) {
-                            vars = support.instanceVars.get(currentClassName);
-                            if (vars == null) {
-                                vars = new HashMap<>();
-                                support.instanceVars.put(currentClassName, vars);
-                            }
+                            vars = support.getInstanceVars(currentClassName);
                             defKey = currentDefKey(varDef.name);
                         } else {
                             Var var = new Var(varDef.name, typeName);
@@ -373,11 +357,7 @@ class ObjCParseTreeListener extends ObjCBaseListener {
         support.emit(interfaceDef);
 
         currentClassName = interfaceDef.name;
-        Map<String, String> currentClassVars = support.instanceVars.get(currentClassName);
-        if (currentClassVars == null) {
-            currentClassVars = new HashMap<>();
-            support.instanceVars.put(currentClassName, currentClassVars);
-        }
+        Map<String, String> currentClassVars = support.getInstanceVars(currentClassName);
 
         support.types.add(interfaceDef.name);
 
@@ -416,11 +396,7 @@ class ObjCParseTreeListener extends ObjCBaseListener {
         support.emit(interfaceRef);
 
         currentClassName = interfaceName;
-        Map<String, String> currentClassVars = support.instanceVars.get(currentClassName);
-        if (currentClassVars == null) {
-            currentClassVars = new HashMap<>();
-            support.instanceVars.put(currentClassName, currentClassVars);
-        }
+        Map<String, String> currentClassVars = support.getInstanceVars(currentClassName);
 
         support.types.add(interfaceName);
 
@@ -710,11 +686,7 @@ class ObjCParseTreeListener extends ObjCBaseListener {
                 }
             } else {
                 if (currentMethodName == null) {
-                    vars = support.instanceVars.get(currentClassName);
-                    if (vars == null) {
-                        vars = new HashMap<>();
-                        support.instanceVars.put(currentClassName, vars);
-                    }
+                    vars = support.getInstanceVars(currentClassName);
                     defKey = currentDefKey(enumeratorDef.name);
                 } else {
                     Var var = new Var(enumeratorDef.name, typeName);
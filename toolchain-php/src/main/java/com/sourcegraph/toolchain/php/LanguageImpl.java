@@ -19,26 +19,64 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
 public class LanguageImpl extends LanguageBase {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LanguageImpl.class);
 
+    /**
+     * Symbol table changes recorded for parse cache
+     */
+    private static final String COMPOSER = "composer";
+    private static final String FILE_VARS = "vars";
+    private static final String GLOBAL_VAR = "global";
+    private static final String CLASS = "class";
+    private static final String CLASS_MEMBER = "member";
+    private static final String FUNCTION = "function";
+    private static final String SEEN_CLASS = "seen";
+    private static final String RESOLUTION = "resolution";
+
+    private static final String EXTENDS = "extends";
+    private static final String IMPLEMENTS = "implements";
+    private static final String USES = "uses";
+    private static final String DEFINES_METHOD = "definesMethod";
+    private static final String IMPLEMENTS_METHOD = "implementsMethod";
+    private static final String CONSTANT = "constant";
+    private static final String PROPERTY = "property";
+
     /**
      * keeps global and function-level variables.
+     * First map (global variables) is visible to all files, use pushFileVars() to start new file
      */
     Stack<Map<String, VarInfo>> vars = new Stack<>();
 
+    /**
+     * use registerClass() to add new class
+     */
     Map<String, ClassInfo> classes = new HashMap<>();
-    Set<String> functions = new HashSet<>();
+    Set<String> functions = new HashSet<String>() {
+        @Override
+        public boolean add(String s) {
+            record(FUNCTION, s);
+            return super.add(s);
+        }
+    };
 
     private Set<String> seenClasses = new HashSet<>();
 
     /**
      * Map ident => definition. We using it to resolve reference candidates.
      */
-    Map<String, Def> resolutions = new HashMap<>();
+    Map<String, Def> resolutions = new HashMap<String, Def>() {
+        @Override
+        public Def put(String key, Def value) {
+            record(RESOLUTION, key, value.defKey.getPath());
+            return super.put(key, value);
+        }
+    };
 
     private CompoundClassFileResolver classFileResolver;
 
@@ -164,6 +202,21 @@ public class LanguageImpl extends LanguageBase {
         return null;
     }
 
+    /**
+     * Resolves candidates with plain lookups in resolutions map, these are too cheap to parallelize
+     */
+    @Override
+    public Map<DefKey, DefKey> resolveAll(Collection<DefKey> sources) {
+        Map<DefKey, DefKey> resolved = new HashMap<>(sources.size() * 2);
+        for (DefKey source : sources) {
+            Def def = resolutions.get(source.getPath());
+            if (def != null) {
+                resolved.put(source, def.defKey);
+            }
+        }
+        return resolved;
+    }
+
     @Override
     public void graph() {
         // Before graphing, let's load composer configuration if there is any
@@ -172,6 +225,8 @@ public class LanguageImpl extends LanguageBase {
         File composerJson = new File(PathUtil.CWD.toFile(), "composer.json");
         if (composerJson.isFile()) {
             try {
+                // class files resolution depends on composer configuration
+                record(COMPOSER, new String(Files.readAllBytes(composerJson.toPath()), StandardCharsets.UTF_8));
                 ComposerSchemaJson configuration = ComposerConfiguration.getConfiguration(composerJson);
                 initAutoLoader(configuration);
             } catch (IOException e) {
@@ -182,21 +237,25 @@ public class LanguageImpl extends LanguageBase {
     }
 
     @Override
-    protected void parse(File sourceFile) throws ParseException {
+    protected ParseTree parse(File sourceFile) throws ParseException {
         try {
             GrammarConfiguration configuration = LanguageBase.createGrammarConfiguration(this,
                     sourceFile,
                     PHPLexer.class,
                     PHPParser.class,
                     new DefaultErrorListener(sourceFile));
-            ParseTree tree = ((PHPParser) configuration.parser).htmlDocument();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(new PHPParseTreeListener(this), tree);
+            return configuration.parse(((PHPParser) configuration.parser)::htmlDocument);
         } catch (Exception e) {
             throw new ParseException(e);
         }
     }
 
+    @Override
+    protected void walk(File sourceFile, ParseTree tree) {
+        ParseTreeWalker walker = new ParseTreeWalker();
+        walker.walk(new PHPParseTreeListener(this), tree);
+    }
+
     @Override
     protected FileCollector getFileCollector(File rootDir, String repoUri) {
         ExtensionBasedFileCollector collector = new ExtensionBasedFileCollector().extension(".php");
@@ -217,12 +276,123 @@ public class LanguageImpl extends LanguageBase {
         if (!seenClasses.add(fullyQualifiedClassName)) {
             return;
         }
+        record(SEEN_CLASS, fullyQualifiedClassName);
         File file = classFileResolver.resolve(fullyQualifiedClassName);
         if (file != null) {
             process(file);
         }
     }
 
+    /**
+     * Registers new class, replaces existing one with the same name if any
+     * @param className class name
+     * @return class info to fill
+     */
+    ClassInfo registerClass(String className) {
+        record(CLASS, className);
+        ClassInfo info = new ClassInfo();
+        info.className = className;
+        info.extendsClasses = members(className, EXTENDS);
+        info.implementsInterfaces = members(className, IMPLEMENTS);
+        info.usesTraits = members(className, USES);
+        info.definesMethods = members(className, DEFINES_METHOD);
+        info.implementsMethods = members(className, IMPLEMENTS_METHOD);
+        info.constants = members(className, CONSTANT);
+        info.properties = members(className, PROPERTY);
+        classes.put(className, info);
+        return info;
+    }
+
+    /**
+     * Pushes map of file-level variables, called when new file is started.
+     * The very first map holds global variables and thus it's visible to other files
+     */
+    void pushFileVars() {
+        record(FILE_VARS);
+        if (!vars.isEmpty()) {
+            vars.push(new HashMap<>());
+            return;
+        }
+        vars.push(new HashMap<String, VarInfo>() {
+            @Override
+            public VarInfo put(String key, VarInfo value) {
+                record(GLOBAL_VAR, key, value.type, String.valueOf(value.local));
+                return super.put(key, value);
+            }
+        });
+    }
+
+    @Override
+    protected boolean isParseCacheSupported() {
+        return true;
+    }
+
+    @Override
+    protected void replay(String[] change) {
+        switch (change[0]) {
+            case FILE_VARS:
+                pushFileVars();
+                break;
+            case GLOBAL_VAR:
+                vars.firstElement().put(change[1], new VarInfo(change[2], Boolean.parseBoolean(change[3])));
+                break;
+            case CLASS:
+                registerClass(change[1]);
+                break;
+            case CLASS_MEMBER:
+                members(classes.get(change[1]), change[2]).add(change[3]);
+                break;
+            case FUNCTION:
+                functions.add(change[1]);
+                break;
+            case SEEN_CLASS:
+                seenClasses.add(change[1]);
+                break;
+            case RESOLUTION:
+                Def def = new Def();
+                def.defKey = new DefKey(null, change[2]);
+                resolutions.put(change[1], def);
+                break;
+            default:
+                super.replay(change);
+        }
+    }
+
+    /**
+     * @return collection of class members of a given kind that records changes for parse cache
+     */
+    private Collection<String> members(String className, String kind) {
+        return new HashSet<String>() {
+            @Override
+            public boolean add(String s) {
+                record(CLASS_MEMBER, className, kind, s);
+                return super.add(s);
+            }
+        };
+    }
+
+    /**
+     * @return class members of a given kind
+     */
+    private static Collection<String> members(ClassInfo info, String kind) {
+        switch (kind) {
+            case EXTENDS:
+                return info.extendsClasses;
+            case IMPLEMENTS:
+                return info.implementsInterfaces;
+            case USES:
+                return info.usesTraits;
+            case DEFINES_METHOD:
+                return info.definesMethods;
+            case IMPLEMENTS_METHOD:
+                return info.implementsMethods;
+            case CONSTANT:
+                return info.constants;
+            default:
+                return info.properties;
+        }
+    }
+
     /**
      * Initializes autoloader (currently PSR-4 and PSR-0 are supported)
      * @param composerSchemaJson configuration from composer.json
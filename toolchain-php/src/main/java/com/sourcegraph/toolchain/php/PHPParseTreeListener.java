@@ -99,7 +99,7 @@ class PHPParseTreeListener extends PHPParserBaseListener {
     public PHPParseTreeListener(LanguageImpl support) {
         this.support = support;
         // initializing variables with an empty map
-        support.vars.push(new HashMap<>());
+        support.pushFileVars();
         // initializing block counter
         blockCounter.push(0);
         // current namespace is the global one
@@ -293,9 +293,7 @@ class PHPParseTreeListener extends PHPParserBaseListener {
         TerminalNode interfaceNode = ctx.Interface();
         String className = ctx.identifier().getText();
         blockStack.push(className);
-        currentClassInfo = new ClassInfo();
-        currentClassInfo.className = fqn(className);
-        this.support.classes.put(currentClassInfo.className, currentClassInfo);
+        currentClassInfo = support.registerClass(fqn(className));
 
         if (interfaceNode != null) {
             Def interfaceDef = def(ctx.identifier(), DefKind.INTERFACE);
@@ -556,7 +554,7 @@ class PHPParseTreeListener extends PHPParserBaseListener {
         VarInfo info = support.vars.peek().get(varName);
         if (info != null) {
             // updating type info
-            info.type = className;
+            support.vars.peek().put(varName, new VarInfo(className, info.local));
         }
 
     }
@@ -944,10 +942,10 @@ class PHPParseTreeListener extends PHPParserBaseListener {
             Def classMethodDef = def(methodCtx, DefKind.METHOD);
             // adding () to distinguish properties from methods
             classMethodDef.defKey = new DefKey(null, fqn(className + CLASS_NAME_SEPARATOR + methodName + "()"));
-            support.emit(classMethodDef);
             classMethodDef.format("function", "(" + ctx.formalParameterList().getText() + ")", DefData.SEPARATOR_EMPTY);
             classMethodDef.defData.setName(classLevelLabel(classMethodDef.name));
             classMethodDef.defData.setKind("method");
+            support.emit(classMethodDef);
             support.resolutions.put(MAYBE_METHOD + methodName, classMethodDef);
         } else {
             Ref classMethodRef = support.ref(methodCtx);
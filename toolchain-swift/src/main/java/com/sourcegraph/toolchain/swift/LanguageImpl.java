@@ -1,18 +1,16 @@
 package com.sourcegraph.toolchain.swift;
 
-import com.sourcegraph.toolchain.core.PathUtil;
 import com.sourcegraph.toolchain.core.objects.DefKey;
 import com.sourcegraph.toolchain.language.*;
 import com.sourcegraph.toolchain.swift.antlr4.SwiftLexer;
 import com.sourcegraph.toolchain.swift.antlr4.SwiftParser;
-import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
-import org.apache.commons.io.Charsets;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,7 +35,7 @@ public class LanguageImpl extends LanguageBase {
         // second pass to extract refs
         firstPass = false;
         for (Map.Entry<File, ParseTree> entry : trees.entrySet()) {
-            processingPath.push(PathUtil.relativizeCwd(entry.getKey().toPath()));
+            processingPath.push(fileRegistry.relativize(entry.getKey()));
             LOGGER.info("Extracting refs from {}", getCurrentFile());
             try {
                 ParseTreeWalker walker = new ParseTreeWalker();
@@ -51,7 +49,7 @@ public class LanguageImpl extends LanguageBase {
     }
 
     @Override
-    protected void parse(File sourceFile) throws ParseException {
+    protected ParseTree parse(File sourceFile) throws ParseException {
         try {
             GrammarConfiguration configuration = LanguageBase.createGrammarConfiguration(
                     this,
@@ -59,15 +57,19 @@ public class LanguageImpl extends LanguageBase {
                     SwiftLexer.class,
                     SwiftParser.class,
                     new DefaultErrorListener(sourceFile));
-            ParseTree tree = ((SwiftParser) configuration.parser).top_level();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(new SwiftParseTreeListener(this), tree);
-            trees.put(sourceFile, tree);
+            return configuration.parse(((SwiftParser) configuration.parser)::top_level);
         } catch (Exception e) {
             throw new ParseException(e);
         }
     }
 
+    @Override
+    protected void walk(File sourceFile, ParseTree tree) {
+        ParseTreeWalker walker = new ParseTreeWalker();
+        walker.walk(new SwiftParseTreeListener(this), tree);
+        trees.put(sourceFile, tree);
+    }
+
     @Override
     protected FileCollector getFileCollector(File rootDir, String repoUri) {
         return new ExtensionBasedFileCollector().extension(".swift");
@@ -85,13 +87,13 @@ public class LanguageImpl extends LanguageBase {
 
     @Override
     protected CharStream getCharStream(File sourceFile) throws IOException {
-        Reader r = new PreprocessorCleaner(
-                new InputStreamReader(
-                        new FileInputStream(sourceFile), Charsets.UTF_8));
-        return new ANTLRInputStream(r);
+        return MappedCharStream.open(sourceFile, StandardCharsets.UTF_8, new PreprocessorCleaner());
     }
 
-    private static class PreprocessorCleaner extends FilterReader {
+    /**
+     * Replaces preprocessor directives with comment-like sequences
+     */
+    private static class PreprocessorCleaner implements MappedCharStream.CharTransform {
 
         enum STATE {
             START,
@@ -102,30 +104,8 @@ public class LanguageImpl extends LanguageBase {
 
         private STATE state = STATE.START;
 
-        PreprocessorCleaner(Reader source) {
-            super(source);
-        }
-
-        @Override
-        public int read() throws IOException {
-            int c = super.read();
-            return convert(c);
-        }
-
         @Override
-        public int read(char cbuf[], int off, int len) throws IOException {
-            int l = super.read(cbuf, off, len);
-            for (int i = 0; i < l; i++) {
-                int pos = off + i;
-                cbuf[pos] = (char) convert(cbuf[pos]);
-            }
-            return l;
-        }
-
-        private int convert(int c) {
-            if (c == -1) {
-                return c;
-            }
+        public char apply(char c) {
             if (c == '#') {
                 if (state == STATE.START || state == STATE.EOL) {
                     // preprocessor directive starts